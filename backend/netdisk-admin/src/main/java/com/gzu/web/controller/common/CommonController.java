@@ -18,6 +18,7 @@ import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
 import com.gzu.common.core.domain.AjaxResult;
 import com.gzu.common.utils.StringUtils;
+import com.gzu.common.utils.file.FileRangeUtils;
 import com.gzu.common.utils.file.FileUploadUtils;
 import com.gzu.common.utils.file.FileUtils;
 import com.gzu.framework.config.ServerConfig;
@@ -156,7 +157,7 @@ public class CommonController
             String downloadName = StringUtils.substringAfterLast(downloadPath, "/");
             response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
             FileUtils.setAttachmentResponseHeader(response, downloadName);
-            FileUtils.writeBytes(downloadPath, response.getOutputStream());
+            FileRangeUtils.writeRange(request, response, downloadPath);
         }
         catch (Exception e)
         {
@@ -3,6 +3,7 @@ package com.gzu.web.controller.common;
 import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
 import com.gzu.common.utils.StringUtils;
+import com.gzu.common.utils.file.FileRangeUtils;
 import com.gzu.common.utils.file.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,7 @@ public class FileAccessController {
     /**
      * 文件访问接口
      * 支持访问路径: /profile/upload/xxx/file.ext
+     * 支持 Range 分段请求（206）和 ETag/Last-Modified 条件请求（304）
      */
     @GetMapping("/**")
     public void accessFile(HttpServletRequest request, HttpServletResponse response) {
@@ -77,10 +79,10 @@ public class FileAccessController {
                 log.info("设置为附件下载");
             }
             
-            // 输出文件内容（自动支持HDFS和本地）
-            log.info("开始写入文件内容到响应流...");
-            FileUtils.writeBytes(filePath, response.getOutputStream());
-            log.info("文件内容写入完成");
+            // 输出文件内容（自动支持HDFS和本地），支持断点续传、视频拖动和浏览器缓存校验
+            log.info("开始写入文件内容到响应流, Range: {}", request.getHeader("Range"));
+            FileRangeUtils.writeRange(request, response, filePath);
+            log.info("文件内容写入完成, 状态: {}", response.getStatus());
             log.info("========== 文件访问请求结束 ==========");
             
         } catch (Exception e) {
@@ -0,0 +1,34 @@
+package com.gzu.web.controller.monitor;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import com.gzu.common.core.domain.AjaxResult;
+import com.gzu.framework.interceptor.DbRoundTripStats;
+
+/**
+ * 接口数据库往返次数监控
+ * 
+ * @author netdisk
+ */
+@RestController
+@RequestMapping("/monitor/roundTrip")
+public class DbRoundTripController
+{
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping()
+    public AjaxResult getInfo()
+    {
+        return AjaxResult.success(DbRoundTripStats.getMetrics());
+    }
+
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @DeleteMapping()
+    public AjaxResult reset()
+    {
+        DbRoundTripStats.reset();
+        return AjaxResult.success();
+    }
+}
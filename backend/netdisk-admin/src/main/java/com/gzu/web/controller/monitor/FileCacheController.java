@@ -0,0 +1,29 @@
+package com.gzu.web.controller.monitor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import com.gzu.common.core.domain.AjaxResult;
+import com.gzu.disk.service.IDiskFileCacheService;
+
+/**
+ * 文件元数据缓存监控
+ * 
+ * @author netdisk
+ */
+@RestController
+@RequestMapping("/monitor/fileCache")
+public class FileCacheController
+{
+    @Autowired
+    private IDiskFileCacheService diskFileCacheService;
+
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping()
+    public AjaxResult getInfo()
+    {
+        return AjaxResult.success(diskFileCacheService.getMetrics());
+    }
+}
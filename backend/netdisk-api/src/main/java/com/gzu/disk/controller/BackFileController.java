@@ -68,4 +68,14 @@ public class BackFileController extends BaseController
         String path = backFileService.mergeFile(fileInfo);
         return AjaxResult.success("操作成功", path);
     }
+
+    /**
+     * 分片上传内存统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/metrics")
+    public AjaxResult metrics()
+    {
+        return AjaxResult.success(backFileService.getUploadMetrics());
+    }
 }
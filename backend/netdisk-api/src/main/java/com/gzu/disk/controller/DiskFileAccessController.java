@@ -56,7 +56,7 @@ public class DiskFileAccessController extends BaseController {
         }
         
         // 检查物理文件是否存在
-        boolean exists = fileConsistencyService.checkFileExists(id);
+        boolean exists = fileConsistencyService.checkFileExists(file);
         
         if (!exists) {
             log.warn("文件记录存在但物理文件不存在: {} (ID: {})", file.getName(), id);
@@ -92,7 +92,7 @@ public class DiskFileAccessController extends BaseController {
         }
         
         // 检查文件是否真实存在
-        boolean exists = fileConsistencyService.checkFileExists(id);
+        boolean exists = fileConsistencyService.checkFileExists(file);
         
         AjaxResult result = AjaxResult.success(file);
         result.put("physicalExists", exists);
@@ -103,5 +103,14 @@ public class DiskFileAccessController extends BaseController {
         
         return result;
     }
-}
 
+    /**
+     * 批量验证文件是否可访问，前端一次请求校验整页文件
+     */
+    @ApiOperation("批量验证文件是否可访问")
+    @PreAuthorize("@ss.hasPermi('disk:file:query')")
+    @PostMapping("/verifyAccess/batch")
+    public AjaxResult verifyFilesAccess(@RequestBody Long[] ids) {
+        return AjaxResult.success(fileConsistencyService.checkFilesExist(ids, getUserId()));
+    }
+}
@@ -6,21 +6,19 @@ import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.RandomUtil;
-import cn.hutool.core.util.ZipUtil;
 import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
 import com.gzu.common.exception.ServiceException;
 import com.gzu.common.utils.SecurityUtils;
 import com.gzu.common.utils.StringUtils;
 import com.gzu.common.utils.file.FileUploadUtils;
-import com.gzu.common.utils.file.FileUtils;
 import com.gzu.common.utils.hdfs.HdfsUtils;
 import com.gzu.disk.domain.*;
 import com.gzu.disk.domain.bo.DownloadBo;
+import com.gzu.disk.domain.bo.MoveBo;
+import com.gzu.disk.domain.vo.FileCursorVO;
 import com.gzu.disk.service.*;
 import com.gzu.framework.config.ServerConfig;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -70,15 +68,17 @@ public class DiskFileController extends BaseController
 
     @Autowired
     private IDiskSensitiveWordService diskSensitiveWordService;
-    
-    @Autowired(required = false)
-    private IFileWatcherService fileWatcherService;
 
     private static final String FILE_DELIMETER = ",";
 
+    private static final int DEFAULT_CURSOR_PAGE_SIZE = 50;
+
     @Autowired
     private IFileConsistencyService fileConsistencyService;
 
+    @Autowired
+    private IDiskDownloadService diskDownloadService;
+
     /**
      * 查询文件列表
      * @param autoClean 是否自动清理无效文件（true=自动过滤并清理不存在的文件）
@@ -89,39 +89,25 @@ public class DiskFileController extends BaseController
     {
         startPage("id desc");
         diskFile.setCreateId(getUserId());
-        DiskStorage diskStorage = new DiskStorage();
-        diskStorage.setCreateId(getUserId());
-        diskStorageService.insertDiskStorage(diskStorage);
-        List<DiskFile> list = diskFileService.selectDiskFileList(diskFile);
-        List<DiskFile> allDiskFiles = diskFileService.selectAll();
+        List<DiskFile> list = diskFileService.selectDiskFileListing(diskFile);
         
         // 如果启用自动清理，验证文件存在性
         if (autoClean != null && autoClean) {
             log.info("开始验证文件列表的有效性...");
-            List<DiskFile> validFiles = new ArrayList<>();
-            List<Long> invalidFileIds = new ArrayList<>();
-            
-            for (DiskFile f : list) {
-                // 目录始终保留
-                if (f.getIsDir() == 1) {
-                    validFiles.add(f);
-                } else {
-                    // 检查文件是否存在
-                    if (fileConsistencyService.checkFileExists(f.getId())) {
-                        validFiles.add(f);
-                    } else {
-                        log.warn("发现无效文件: {} (ID: {})", f.getName(), f.getId());
-                        invalidFileIds.add(f.getId());
-                    }
-                }
+            Long userId = getUserId();
+            List<DiskFile> validFiles = new ArrayList<>(list);
+            List<DiskFile> invalidFiles = fileConsistencyService.findMissingFiles(list);
+            validFiles.removeAll(invalidFiles);
+            for (DiskFile f : invalidFiles) {
+                log.warn("发现无效文件: {} (ID: {})", f.getName(), f.getId());
             }
             
             // 异步清理无效文件记录
-            if (!invalidFileIds.isEmpty()) {
-                log.info("发现 {} 个无效文件，开始清理...", invalidFileIds.size());
+            if (!invalidFiles.isEmpty()) {
+                log.info("发现 {} 个无效文件，开始清理...", invalidFiles.size());
                 new Thread(() -> {
                     try {
-                        fileConsistencyService.checkAndCleanInvalidFiles(getUserId());
+                        fileConsistencyService.checkAndCleanInvalidFiles(userId);
                         log.info("无效文件清理完成");
                     } catch (Exception e) {
                         log.error("清理无效文件时出错", e);
@@ -131,18 +117,23 @@ public class DiskFileController extends BaseController
             
             list = validFiles;
         }
-        
-        list.forEach(f -> {
-            if (f.getIsDir()==1) {
-                List<DiskFile> allChildFiles = new ArrayList<>();
-                diskFileService.getChildPerms(allDiskFiles,allChildFiles,f.getId());
-                f.setSize(allChildFiles.stream().map(DiskFile::getSize)
-                        .reduce(0L,Long::sum));
-            }
-        });
         return getDataTable(list);
     }
 
+    /**
+     * 游标分页查询文件列表
+     * 以上一页最后一条记录的ID作为游标继续读取，不查询总数，深翻页耗时不随页码增长
+     */
+    @PreAuthorize("@ss.hasPermi('disk:file:list')")
+    @GetMapping("/cursor")
+    public AjaxResult cursor(DiskFile diskFile, Long lastId, String sortKey, Integer pageSize)
+    {
+        diskFile.setCreateId(getUserId());
+        FileCursorVO page = diskFileService.selectDiskFileCursor(diskFile, lastId, sortKey,
+                pageSize == null ? DEFAULT_CURSOR_PAGE_SIZE : pageSize);
+        return success(page);
+    }
+
     /**
      * 导出文件列表
      */
@@ -176,8 +167,7 @@ public class DiskFileController extends BaseController
     {
         diskFile.setCreateId(getUserId());
         // 获取当前用户本人的存储目录
-        DiskStorage diskStorage = diskStorageService.selectDiskStorageByUserId(SecurityUtils.getUserId());
-        if (Objects.isNull(diskStorage)) throw new ServiceException("空间未初始化");
+        DiskStorage diskStorage = diskStorageService.initDiskStorage(SecurityUtils.getUserId());
         if (diskFile.getIsDir()==1) {
             //是文件夹，设置url
             // 上传文件路径
@@ -220,16 +210,6 @@ public class DiskFileController extends BaseController
         
         int result = diskFileService.insertDiskFile(diskFile);
         
-        // 重新加载文件监控（如果启用）
-        if (result > 0 && fileWatcherService != null && fileWatcherService.isWatching()) {
-            try {
-                fileWatcherService.reloadWatchDirectories();
-                log.info("已重新加载文件监控");
-            } catch (Exception e) {
-                log.warn("重新加载文件监控失败", e);
-            }
-        }
-        
         return toAjax(result);
     }
 
@@ -243,16 +223,23 @@ public class DiskFileController extends BaseController
     {
         int result = diskFileService.updateDiskFile(diskFile);
         
-        // 重新加载文件监控（如果启用），因为文件夹重命名会改变路径
-        if (result > 0 && fileWatcherService != null && fileWatcherService.isWatching()) {
-            try {
-                fileWatcherService.reloadWatchDirectories();
-                log.info("已重新加载文件监控（文件夹/文件重命名后）");
-            } catch (Exception e) {
-                log.warn("重新加载文件监控失败", e);
-            }
-        }
-        
+        return toAjax(result);
+    }
+
+    /**
+     * 移动文件或文件夹
+     */
+    @PreAuthorize("@ss.hasPermi('disk:file:edit')")
+    @Log(title = "文件", businessType = BusinessType.UPDATE)
+    @PutMapping("/move")
+    public AjaxResult move(@RequestBody MoveBo moveBo)
+    {
+        Long[] ids = Arrays.stream(moveBo.getIds().split(","))
+                .map(String::trim)
+                .map(Long::valueOf)
+                .toArray(Long[]::new);
+        int result = diskFileService.moveDiskFiles(ids, moveBo.getParentId());
+
         return toAjax(result);
     }
 
@@ -264,7 +251,7 @@ public class DiskFileController extends BaseController
 	@DeleteMapping("/{ids}")
     public AjaxResult remove(@PathVariable Long[] ids)
     {
-        int j = removeByParentIds(ids);
+        int j = diskFileService.removeDiskFileTreeByIds(ids);
         for (Long id : ids) {
             DiskRecoveryFile diskRecoveryFile = new DiskRecoveryFile();
             diskRecoveryFile.setFileId(id);
@@ -274,19 +261,6 @@ public class DiskFileController extends BaseController
         return toAjax(j);
     }
 
-    private int removeByParentIds(Long[] ids) {
-        int j = diskFileService.removeDiskFileByIds(ids);
-        List<Long> idsList = diskFileService.selectDiskFileByParentIds(ids);
-        Long[] itmeIds = new Long[idsList.size()];
-        idsList.toArray(itmeIds);
-        if (itmeIds.length>0) {
-            removeByParentIds(itmeIds);
-        }else {
-            return j;
-        }
-        return j;
-    }
-
     /**
      * 通用上传请求（单个）
      */
@@ -300,39 +274,16 @@ public class DiskFileController extends BaseController
             log.info("文件大小: {} bytes", file.getSize());
             log.info("父文件夹ID: {}", parentId);
             
-            // 上传文件路径
-            String filePath = RuoYiConfig.getUploadPath();
-            log.info("基础上传路径: {}", filePath);
-            
             // 获取当前用户本人的存储目录
-            DiskStorage diskStorage = diskStorageService.selectDiskStorageByUserId(SecurityUtils.getUserId());
-            if (Objects.isNull(diskStorage)) {
-                log.error("存储空间未初始化");
-                throw new ServiceException("未初始化存储空间");
-            }
+            DiskStorage diskStorage = diskStorageService.initDiskStorage(SecurityUtils.getUserId());
             log.info("用户存储目录: {}", diskStorage.getBaseDir());
             log.info("存储空间: 已用={}, 总容量={}", diskStorage.getUsedCapacity(), diskStorage.getTotalCapacity());
             
-            if (diskStorage.getTotalCapacity()-diskStorage.getUsedCapacity()<=0) {
-                log.error("存储空间不足");
-                throw new ServiceException("存储空间不足");
+            if (!parentId.equals(0L) && Objects.isNull(diskFileService.selectDiskFileById(parentId))) {
+                log.error("父文件夹不存在: {}", parentId);
+                throw new ServiceException("父文件夹不存在");
             }
             
-            if (parentId.equals(0L)) {
-                filePath = filePath+"/"+diskStorage.getBaseDir();
-            } else {
-                DiskFile parentIdFile = diskFileService.selectDiskFileById(parentId);
-                if (Objects.isNull(parentIdFile)) {
-                    log.error("父文件夹不存在: {}", parentId);
-                    throw new ServiceException("父文件夹不存在");
-                }
-                String[] localPaths = RuoYiConfig.getUploadPath().split("/");
-                filePath = filePath+"/"+diskStorage.getBaseDir()+parentIdFile.getUrl()
-                        .replace(Constants.RESOURCE_PREFIX,"").replace(localPaths[localPaths.length-1],"")
-                        .replace("/"+diskStorage.getBaseDir(),"");
-            }
-            log.info("最终上传路径: {}", filePath);
-            
             diskSensitiveWordService.filterSensitiveWord(file.getOriginalFilename());
             DiskFile diskFile = new DiskFile();
             // 使用原始文件名，不添加随机前缀
@@ -340,30 +291,26 @@ public class DiskFileController extends BaseController
             diskFile.setName(fileName);
             log.info("使用原始文件名: {}", fileName);
             
-            // 上传并返回新文件名称
-            log.info("开始上传文件到存储系统...");
-            fileName = FileUploadUtils.upload(filePath,false, file,fileName);
-            log.info("文件上传成功，返回路径: {}", fileName);
-            
-            String url = serverConfig.getUrl()  + fileName;
             diskFile.setCreateId(getUserId());
             diskFile.setOldName(file.getOriginalFilename());
             diskFile.setIsDir(0);
             diskFile.setOrderNum(0);
             diskFile.setParentId(parentId);
-            diskFile.setUrl(fileName);
             diskFile.setSize(file.getSize());
             String extension = FileUploadUtils.getExtension(file);
             diskFile.setType(diskFileService.getType(extension));
             
-            log.info("保存文件记录到数据库...");
-            diskFileService.save(diskFile,diskStorage);
-            log.info("文件记录保存成功");
+            // 文件内容经过去重存储，相同内容只保存一份物理文件
+            log.info("保存文件内容及记录...");
+            diskFileService.save(diskFile,diskStorage,file);
+            fileName = diskFile.getUrl();
+            String url = serverConfig.getUrl()  + fileName;
+            log.info("文件记录保存成功，存储路径: {}", fileName);
             
             AjaxResult ajax = AjaxResult.success();
             ajax.put("url", url);
             ajax.put("fileName", fileName);
-            ajax.put("newFileName", FileUtils.getName(fileName));
+            ajax.put("newFileName", diskFile.getName());
             ajax.put("originalFilename", file.getOriginalFilename());
             ajax.put("size", file.getSize());
             ajax.put("type", extension);
@@ -388,9 +335,7 @@ public class DiskFileController extends BaseController
     {
         DiskShareFile diskShareFile1 = diskShareFileService.get(diskShareFile.getUuid().trim());
         diskShareFileService.verify(diskShareFile,diskShareFile1);
-        DiskFile diskFile = new DiskFile();
-        diskFile.setParentId(parentId);
-        List<DiskFile> diskFiles = diskFileService.selectDiskFileList(diskFile);
+        List<DiskFile> diskFiles = diskFileService.selectChildren(diskShareFile1.getCreateId(), parentId);
         Set<String> avoidWordSet = new HashSet<>(Arrays.asList(diskShareFile1.getAllFileIds().split(",")));
 
         List<DiskFile> filteredList = diskFiles.stream()
@@ -400,70 +345,31 @@ public class DiskFileController extends BaseController
     }
 
     /**
-     * 本地资源通用下载
+     * 打包下载选中的文件和文件夹
+     * 文件内容从本地或HDFS直接流式写入zip响应，不生成临时目录和临时压缩包
      */
     @GetMapping("/download/zip")
     public void hadoopDownload(DownloadBo downloadBo, HttpServletResponse response) {
+        Long[] ids = Arrays.stream(downloadBo.getIds().split(","))
+                .map(String::trim)
+                .map(Long::valueOf)
+                .toArray(Long[]::new);
         List<DiskFile> diskFiles;
-        String dest = RuoYiConfig.getProfile()+"/";
         if (StringUtils.isNotEmpty(downloadBo.getUuid())&&StringUtils.isNotEmpty(downloadBo.getSecretKey())) {
-            diskFiles = diskFileService.selectDiskFileListByIds(Arrays.stream(downloadBo.getIds().split(","))
-                    .map(String::trim)
-                    .map(Long::valueOf)
-                    .toArray(Long[]::new));
-            dest = dest + downloadBo.getUuid();
+            diskFiles = diskFileService.selectDiskFileListByIds(ids);
         } else {
-            diskFiles = diskFileService.selectDiskFileListByIds(Arrays.stream(downloadBo.getIds().split(","))
-                    .map(String::trim)
-                    .map(Long::valueOf)
-                    .toArray(Long[]::new),getUserId());
-            dest = dest + RandomUtil.randomString(6);
+            diskFiles = diskFileService.selectDiskFileListByIds(ids,getUserId());
         }
-        FileUtil.mkdir(dest);
 
         try {
-            String finalDest = dest;
-            // 从HDFS或本地复制文件到临时目录
-            diskFiles.forEach(diskFile -> {
-                try {
-                    // 本地资源路径
-                    String localPath = RuoYiConfig.getProfile();
-                    // 数据库资源地址
-                    String filePath = localPath + StringUtils.substringAfter(diskFile.getUrl(), Constants.RESOURCE_PREFIX);
-                    
-                    // 使用FileUtils.writeBytes，它会自动判断HDFS还是本地
-                    String destFilePath = finalDest + "/" + diskFile.getName();
-                    try (FileOutputStream fos = new FileOutputStream(destFilePath)) {
-                        FileUtils.writeBytes(filePath, fos);
-                    }
-                } catch (Exception e) {
-                    log.error("复制文件失败: {}", diskFile.getName(), e);
-                }
-            });
-            
-            // 调用zip方法进行压缩
-            String downloadPath = dest + ".zip";
-            ZipUtil.zip(dest, downloadPath);
-            byte[] data = FileUtil.readBytes(FileUtil.file(downloadPath));
             response.reset();
             response.addHeader("Access-Control-Allow-Origin", "*");
             response.addHeader("Access-Control-Expose-Headers", "Content-Disposition");
             response.setHeader("Content-Disposition", "attachment; filename=\"ruoyi.zip\"");
-            response.addHeader("Content-Length", "" + data.length);
             response.setContentType("application/octet-stream; charset=UTF-8");
-            IOUtils.write(data, response.getOutputStream());
-            
-            // 清理临时文件
-            FileUtil.del(dest);
-            FileUtils.deleteFile(downloadPath);
+            diskDownloadService.writeZip(diskFiles, response.getOutputStream());
         } catch (IOException e) {
             log.error("diskFile 下载文件失败", e);
-            // 确保清理临时文件
-            try {
-                FileUtil.del(dest);
-            } catch (Exception ex) {
-                log.error("清理临时文件失败", ex);
-            }
         }
     }
 
@@ -98,9 +98,7 @@ public class DiskShareFileController extends BaseController
         List<Long> shareFileIds = Arrays.stream(fileIdsArry)
                 .map(Long::valueOf)
                 .collect(Collectors.toList());
-        List<DiskFile> allShareFiles = diskFileService.selectDiskFileListByIds(shareFileIds.toArray(new Long[0]));
-        List<DiskFile> allDiskFiles = diskFileService.selectAll();
-        shareFileIds.forEach(parentId -> diskFileService.getChildPerms(allDiskFiles,allShareFiles,parentId));
+        List<DiskFile> allShareFiles = diskFileService.selectSubtreeByIds(shareFileIds.toArray(new Long[0]), false);
         diskShareFile.setAllFileIds(StringUtils.join(allShareFiles.stream().map(DiskFile::getId).collect(Collectors.toList()), ","));
         return AjaxResult.success(diskShareFileService.insertDiskShareFile(diskShareFile));
     }
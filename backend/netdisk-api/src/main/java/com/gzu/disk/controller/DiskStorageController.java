@@ -10,6 +10,7 @@ import com.gzu.common.core.domain.model.LoginUser;
 import com.gzu.common.utils.StringUtils;
 import com.gzu.disk.domain.DiskFile;
 import com.gzu.disk.service.IDiskFileService;
+import com.gzu.disk.service.IDiskQuotaService;
 import com.gzu.disk.service.IDiskRecoveryFileService;
 import com.gzu.system.service.ISysUserService;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -54,6 +55,9 @@ public class DiskStorageController extends BaseController
     @Autowired
     private IDiskRecoveryFileService recoveryFileService;
 
+    @Autowired
+    private IDiskQuotaService diskQuotaService;
+
     /**
      * 查询用户存储列表
      */
@@ -63,9 +67,7 @@ public class DiskStorageController extends BaseController
     {
         startPage("id desc");
         diskStorage.setCreateId(getUserId());
-        DiskStorage initDiskStorage = new DiskStorage();
-        initDiskStorage.setCreateId(getUserId());
-        diskStorageService.insertDiskStorage(initDiskStorage);
+        diskStorageService.initDiskStorage(getUserId());
         List<DiskStorage> list = diskStorageService.selectDiskStorageList(diskStorage);
         List<Long> userIds = list.stream().map(DiskStorage::getCreateId).collect(Collectors.toList());
         List<SysUser> sysUsers = iSysUserService.selectUserByIds(userIds);
@@ -83,9 +85,7 @@ public class DiskStorageController extends BaseController
     public TableDataInfo list(DiskStorage diskStorage)
     {
         if (!getLoginUser().getUser().isAdmin()) diskStorage.setCreateId(getUserId());
-        DiskStorage initDiskStorage = new DiskStorage();
-        initDiskStorage.setCreateId(getUserId());
-        diskStorageService.insertDiskStorage(initDiskStorage);
+        diskStorageService.initDiskStorage(getUserId());
         startPage("id desc");
         List<DiskStorage> list = diskStorageService.selectDiskStorageList(diskStorage);
         List<Long> userIds = list.stream().map(DiskStorage::getCreateId).collect(Collectors.toList());
@@ -99,6 +99,16 @@ public class DiskStorageController extends BaseController
         return getDataTable(list);
     }
 
+    /**
+     * 存储容量配额统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/quotaMetrics")
+    public AjaxResult quotaMetrics()
+    {
+        return success(diskQuotaService.getMetrics());
+    }
+
     /**
      * 导出用户存储列表
      */
@@ -196,16 +206,7 @@ public class DiskStorageController extends BaseController
         }else {
             diskFile.setCreateId(getUserId());
         }
-        List<DiskFile> list = diskFileService.selectDiskFileList(diskFile);
-        List<DiskFile> allDiskFiles = diskFileService.selectAll();
-        list.forEach(f -> {
-            if (f.getIsDir()==1) {
-                List<DiskFile> allChildFiles = new ArrayList<>();
-                diskFileService.getChildPerms(allDiskFiles,allChildFiles,f.getId());
-                f.setSize(allChildFiles.stream().map(DiskFile::getSize)
-                        .reduce(0L,Long::sum));
-            }
-        });
+        List<DiskFile> list = diskFileService.selectDiskFileListing(diskFile);
         return getDataTable(list);
     }
 
@@ -223,11 +224,11 @@ public class DiskStorageController extends BaseController
         if (StringUtils.isNotNull(currentUser) && !currentUser.isAdmin()) {
             fileIds = diskFileService.selectAllIdsByUserId(getUserId());
             recoveryFileService.deleteDiskRecoveryFileByUserId(getUserId());
-            diskStorageService.updateUsedCapacityByUserId(getUserId(),0L);
+            diskQuotaService.reset(getUserId(), 0L);
         } else {
             fileIds = diskFileService.selectAllIdsByUserId(userId);
             recoveryFileService.deleteDiskRecoveryFileByUserId(userId);
-            diskStorageService.updateUsedCapacityByUserId(userId,0L);
+            diskQuotaService.reset(userId, 0L);
         }
         int num = 0;
         if (CollectionUtil.isNotEmpty(fileIds)) {
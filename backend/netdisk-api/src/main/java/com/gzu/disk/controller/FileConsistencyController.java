@@ -85,5 +85,14 @@ public class FileConsistencyController extends BaseController {
         Map<Long, Boolean> result = fileConsistencyService.batchCheckFilesExist(fileIds);
         return AjaxResult.success(result);
     }
-}
 
+    /**
+     * 一致性检查统计信息
+     */
+    @ApiOperation("一致性检查统计信息")
+    @PreAuthorize("@ss.hasPermi('system:user:list')")
+    @GetMapping("/metrics")
+    public AjaxResult metrics() {
+        return AjaxResult.success(fileConsistencyService.getMetrics());
+    }
+}
@@ -34,7 +34,8 @@ public class FileWatcherController extends BaseController {
         boolean watching = fileWatcherService.isWatching();
         return AjaxResult.success()
             .put("watching", watching)
-            .put("message", watching ? "监控服务运行中" : "监控服务已停止");
+            .put("message", watching ? "监控服务运行中" : "监控服务已停止")
+            .put("metrics", fileWatcherService.getMetrics());
     }
 
     /**
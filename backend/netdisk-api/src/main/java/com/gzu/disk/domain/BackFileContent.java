@@ -0,0 +1,100 @@
+package com.gzu.disk.domain;
+
+import com.gzu.common.core.domain.BaseEntity;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * 文件内容索引对象 sys_file_content
+ * 记录服务端校验过的文件内容哈希，用于秒传判断
+ */
+public class BackFileContent extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 主键ID */
+    private Long id;
+
+    /** 服务端计算的MD5 */
+    private String hash;
+
+    /** 文件总大小 */
+    private Long totalSize;
+
+    /** 首次上传的文件名 */
+    private String filename;
+
+    /** 链接 */
+    private String url;
+
+    /** 存储地址 */
+    private String location;
+
+    public void setId(Long id)
+    {
+        this.id = id;
+    }
+
+    public Long getId()
+    {
+        return id;
+    }
+    public void setHash(String hash)
+    {
+        this.hash = hash;
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+    public void setTotalSize(Long totalSize)
+    {
+        this.totalSize = totalSize;
+    }
+
+    public Long getTotalSize()
+    {
+        return totalSize;
+    }
+    public void setFilename(String filename)
+    {
+        this.filename = filename;
+    }
+
+    public String getFilename()
+    {
+        return filename;
+    }
+    public void setUrl(String url)
+    {
+        this.url = url;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+    public void setLocation(String location)
+    {
+        this.location = location;
+    }
+
+    public String getLocation()
+    {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+            .append("id", getId())
+            .append("hash", getHash())
+            .append("totalSize", getTotalSize())
+            .append("filename", getFilename())
+            .append("url", getUrl())
+            .append("location", getLocation())
+            .append("createTime", getCreateTime())
+            .toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.gzu.disk.domain;
+
+import com.gzu.common.core.domain.BaseEntity;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * 文件内容存储对象 disk_blob
+ * 相同内容的文件只保存一份物理文件，通过引用次数决定何时删除
+ */
+public class DiskBlob extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 主键ID */
+    private Long id;
+
+    /** 内容MD5 */
+    private String hash;
+
+    /** 物理文件地址 */
+    private String url;
+
+    /** 文件大小 */
+    private Long size;
+
+    /** 引用次数 */
+    private Integer refCount;
+
+    public void setId(Long id)
+    {
+        this.id = id;
+    }
+
+    public Long getId()
+    {
+        return id;
+    }
+    public void setHash(String hash)
+    {
+        this.hash = hash;
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+    public void setUrl(String url)
+    {
+        this.url = url;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+    public void setSize(Long size)
+    {
+        this.size = size;
+    }
+
+    public Long getSize()
+    {
+        return size;
+    }
+    public void setRefCount(Integer refCount)
+    {
+        this.refCount = refCount;
+    }
+
+    public Integer getRefCount()
+    {
+        return refCount;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+            .append("id", getId())
+            .append("hash", getHash())
+            .append("url", getUrl())
+            .append("size", getSize())
+            .append("refCount", getRefCount())
+            .append("createTime", getCreateTime())
+            .toString();
+    }
+}
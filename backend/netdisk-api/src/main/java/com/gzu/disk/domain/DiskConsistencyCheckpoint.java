@@ -0,0 +1,87 @@
+package com.gzu.disk.domain;
+
+import com.gzu.common.core.domain.BaseEntity;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * 一致性检查进度对象 disk_consistency_checkpoint
+ * 定时检查按文件ID顺序分批推进，每批提交时记录检查到的位置，下次从该位置继续
+ */
+public class DiskConsistencyCheckpoint extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 检查范围 */
+    private String scanKey;
+
+    /** 已检查到的最大文件ID，0表示新一轮从头开始 */
+    private Long lastId;
+
+    /** 已完成的完整轮次 */
+    private Long generation;
+
+    /** 本轮已检查文件数 */
+    private Long checkedFiles;
+
+    /** 本轮已清理的无效文件数 */
+    private Long invalidFiles;
+
+    public void setScanKey(String scanKey)
+    {
+        this.scanKey = scanKey;
+    }
+
+    public String getScanKey()
+    {
+        return scanKey;
+    }
+    public void setLastId(Long lastId)
+    {
+        this.lastId = lastId;
+    }
+
+    public Long getLastId()
+    {
+        return lastId;
+    }
+    public void setGeneration(Long generation)
+    {
+        this.generation = generation;
+    }
+
+    public Long getGeneration()
+    {
+        return generation;
+    }
+    public void setCheckedFiles(Long checkedFiles)
+    {
+        this.checkedFiles = checkedFiles;
+    }
+
+    public Long getCheckedFiles()
+    {
+        return checkedFiles;
+    }
+    public void setInvalidFiles(Long invalidFiles)
+    {
+        this.invalidFiles = invalidFiles;
+    }
+
+    public Long getInvalidFiles()
+    {
+        return invalidFiles;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+            .append("scanKey", getScanKey())
+            .append("lastId", getLastId())
+            .append("generation", getGeneration())
+            .append("checkedFiles", getCheckedFiles())
+            .append("invalidFiles", getInvalidFiles())
+            .append("updateTime", getUpdateTime())
+            .toString();
+    }
+}
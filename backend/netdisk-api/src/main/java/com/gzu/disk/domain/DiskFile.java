@@ -64,6 +64,18 @@ public class DiskFile extends BaseEntity
     /** 删除标志（0代表存在 */
     private String delFlag;
 
+    /** 内容哈希，对应去重存储的内容，为空表示独立存储的文件 */
+    private String hash;
+
+    /** 目录下未删除文件的总大小，仅目录有效 */
+    private Long subtreeSize;
+
+    /** 目录下未删除的文件和目录数量，仅目录有效 */
+    private Long subtreeCount;
+
+    /** 物化路径，祖先目录ID和自身ID，如 /12/34/ */
+    private String path;
+
     private List<DiskFile> children;
 
     private SysUser sysUser;
@@ -177,6 +189,46 @@ public class DiskFile extends BaseEntity
         return delFlag;
     }
 
+    public void setHash(String hash)
+    {
+        this.hash = hash;
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+
+    public void setSubtreeSize(Long subtreeSize)
+    {
+        this.subtreeSize = subtreeSize;
+    }
+
+    public Long getSubtreeSize()
+    {
+        return subtreeSize;
+    }
+
+    public void setSubtreeCount(Long subtreeCount)
+    {
+        this.subtreeCount = subtreeCount;
+    }
+
+    public Long getSubtreeCount()
+    {
+        return subtreeCount;
+    }
+
+    public void setPath(String path)
+    {
+        this.path = path;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
     public List<DiskFile> getChildren() {
         return children;
     }
@@ -211,6 +263,10 @@ public class DiskFile extends BaseEntity
             .append("updateTime", getUpdateTime())
             .append("remark", getRemark())
             .append("delFlag", getDelFlag())
+            .append("hash", getHash())
+            .append("subtreeSize", getSubtreeSize())
+            .append("subtreeCount", getSubtreeCount())
+            .append("path", getPath())
             .toString();
     }
 }
@@ -0,0 +1,30 @@
+package com.gzu.disk.domain.bo;
+
+
+import java.io.Serializable;
+
+public class MoveBo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 要移动的文件ID，逗号分隔 */
+    private String ids;
+
+    /** 目标文件夹ID，0表示根目录 */
+    private Long parentId;
+
+    public String getIds() {
+        return ids;
+    }
+
+    public void setIds(String ids) {
+        this.ids = ids;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+}
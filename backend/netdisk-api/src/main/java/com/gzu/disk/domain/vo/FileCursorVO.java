@@ -0,0 +1,45 @@
+package com.gzu.disk.domain.vo;
+
+import com.gzu.disk.domain.DiskFile;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 游标分页结果，下一页以 nextCursor 作为 lastId 查询
+ */
+public class FileCursorVO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<DiskFile> rows = new ArrayList<>();
+
+    /** 本页最后一条记录的ID，没有下一页时为空 */
+    private Long nextCursor;
+
+    private boolean hasMore;
+
+    public List<DiskFile> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<DiskFile> rows) {
+        this.rows = rows;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,42 @@
+package com.gzu.disk.mapper;
+
+import com.gzu.disk.domain.BackFileContent;
+
+import java.util.List;
+
+/**
+ * 文件内容索引Mapper接口
+ */
+public interface BackFileContentMapper
+{
+    /**
+     * 根据内容哈希查询
+     *
+     * @param hash 服务端计算的MD5
+     * @return 文件内容索引
+     */
+    public BackFileContent selectBackFileContentByHash(String hash);
+
+    /**
+     * 查询全部内容哈希，用于启动时预热布隆过滤器
+     *
+     * @return 哈希集合
+     */
+    public List<String> selectAllHashes();
+
+    /**
+     * 新增文件内容索引，哈希已存在时忽略
+     *
+     * @param backFileContent 文件内容索引
+     * @return 结果
+     */
+    public int insertBackFileContent(BackFileContent backFileContent);
+
+    /**
+     * 删除文件内容索引，用于合并后的文件已不存在时
+     *
+     * @param id 主键
+     * @return 结果
+     */
+    public int deleteBackFileContentById(Long id);
+}
@@ -0,0 +1,49 @@
+package com.gzu.disk.mapper;
+
+import com.gzu.disk.domain.DiskBlob;
+
+/**
+ * 文件内容存储Mapper接口
+ */
+public interface DiskBlobMapper
+{
+    /**
+     * 根据内容哈希查询
+     *
+     * @param hash 内容MD5
+     * @return 文件内容存储
+     */
+    public DiskBlob selectDiskBlobByHash(String hash);
+
+    /**
+     * 根据内容哈希查询并加行锁，记录不存在时锁定唯一索引上的间隙，需在事务中调用
+     *
+     * @param hash 内容MD5
+     * @return 文件内容存储
+     */
+    public DiskBlob selectDiskBlobByHashForUpdate(String hash);
+
+    /**
+     * 新增文件内容存储，哈希已存在时引用次数加一
+     *
+     * @param diskBlob 文件内容存储
+     * @return 结果
+     */
+    public int upsertDiskBlob(DiskBlob diskBlob);
+
+    /**
+     * 引用次数减一，不会减到0以下
+     *
+     * @param hash 内容MD5
+     * @return 结果
+     */
+    public int decrementRefCount(String hash);
+
+    /**
+     * 删除引用次数为0的记录
+     *
+     * @param hash 内容MD5
+     * @return 结果，仍有引用时为0
+     */
+    public int deleteUnreferencedDiskBlob(String hash);
+}
@@ -0,0 +1,37 @@
+package com.gzu.disk.mapper;
+
+import com.gzu.disk.domain.DiskConsistencyCheckpoint;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 一致性检查进度Mapper接口
+ */
+public interface DiskConsistencyCheckpointMapper
+{
+    /**
+     * 查询检查进度
+     *
+     * @param scanKey 检查范围
+     * @return 检查进度
+     */
+    public DiskConsistencyCheckpoint selectCheckpoint(String scanKey);
+
+    /**
+     * 新增检查进度，已存在时忽略
+     *
+     * @param scanKey 检查范围
+     * @return 结果
+     */
+    public int insertCheckpoint(String scanKey);
+
+    /**
+     * 推进检查进度，只有进度仍为读取时的值才会更新，多个节点同时检查时同一批只会被处理一次
+     *
+     * @param checkpoint 新的进度
+     * @param lastId 读取时的lastId
+     * @param generation 读取时的轮次
+     * @return 结果，进度已被其他节点推进时为0
+     */
+    public int advanceCheckpoint(@Param("checkpoint") DiskConsistencyCheckpoint checkpoint,
+            @Param("lastId") Long lastId, @Param("generation") Long generation);
+}
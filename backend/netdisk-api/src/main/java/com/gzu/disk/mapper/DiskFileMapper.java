@@ -30,6 +30,26 @@ public interface DiskFileMapper
      */
     public List<DiskFile> selectDiskFileList(DiskFile diskFile);
 
+    /**
+     * 查询列表页文件，目录的大小为其子树汇总大小
+     *
+     * @param diskFile 文件
+     * @return 文件集合
+     */
+    public List<DiskFile> selectDiskFileListing(DiskFile diskFile);
+
+    /**
+     * 游标分页查询文件列表
+     *
+     * @param query 查询条件，使用 createId、parentId、type
+     * @param last 上一页最后一条记录，为空时查询第一页
+     * @param sortKey 排序字段 id 或 name
+     * @param limit 查询条数
+     * @return 文件集合
+     */
+    public List<DiskFile> selectDiskFilePageAfter(@Param("query") DiskFile query, @Param("last") DiskFile last,
+                                                  @Param("sortKey") String sortKey, @Param("limit") int limit);
+
     /**
      * 新增文件
      * 
@@ -74,7 +94,31 @@ public interface DiskFileMapper
 
     List<DiskFile> selectDiskFileListByIdsIgnoreDel(Long[] ids);
 
-    List<DiskFile> selectAll();
+    /**
+     * 按ID顺序读取ID大于lastId的未删除文件（不含目录）
+     *
+     * @param userId 用户ID，为null时不限用户
+     * @param lastId 上一批最后一条记录的ID，从头读取时传0
+     * @param limit 读取条数
+     * @return 文件记录
+     */
+    List<DiskFile> selectFileSliceAfter(@Param("userId") Long userId, @Param("lastId") Long lastId, @Param("limit") int limit);
+
+    /**
+     * 按文件地址查询未删除的文件（不含目录），同一地址可能对应多条记录
+     *
+     * @param urls 文件地址
+     * @return 文件记录
+     */
+    List<DiskFile> selectDiskFileListByUrls(@Param("urls") List<String> urls);
+
+    /**
+     * 按文件地址前缀查询未删除的文件（不含目录）
+     *
+     * @param prefix 地址前缀，LIKE 通配符需已转义
+     * @return 文件记录
+     */
+    List<DiskFile> selectDiskFileListByUrlPrefix(String prefix);
 
     int refresh(Long[] ids);
 
@@ -87,4 +131,80 @@ public interface DiskFileMapper
     List<Map<String, Object>> fileTypeNumStats(Long userId);
 
     List<Long> selectAllIdsByUserId(Long userId);
+
+    /**
+     * 按物化路径查询子树，包含子树根
+     *
+     * @param paths 子树根的路径
+     * @param delFlag 删除标志，为空时不限
+     * @return 文件集合
+     */
+    List<DiskFile> selectDiskFileListByPaths(@Param("paths") List<String> paths, @Param("delFlag") String delFlag);
+
+    /**
+     * 将子树中未删除的文件移入回收站
+     */
+    int removeDiskFileByPaths(List<String> paths);
+
+    /**
+     * 还原子树中已删除的文件
+     */
+    int refreshByPaths(List<String> paths);
+
+    /**
+     * 文件夹重命名或移动后，替换子项URL的旧前缀
+     *
+     * @param path 文件夹的物化路径，为空时按用户查找
+     * @param userId 用户ID
+     * @param oldUrl 文件夹旧URL
+     * @param newUrl 文件夹新URL
+     * @return 结果
+     */
+    int updateSubtreeUrl(@Param("path") String path, @Param("userId") Long userId,
+                         @Param("oldUrl") String oldUrl, @Param("newUrl") String newUrl);
+
+    /**
+     * 移动后替换子树物化路径的旧前缀
+     */
+    int updateSubtreePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+    /**
+     * 按父目录的路径生成文件路径
+     */
+    int updatePathById(Long id);
+
+    /**
+     * 重新生成所有文件的路径
+     *
+     * @return 修正的行数
+     */
+    int rebuildPaths();
+
+    /**
+     * 查询所有有文件的用户ID
+     */
+    List<Long> selectAllUserIds();
+
+    /**
+     * 查询并锁定用户的全部文件记录（含已删除），用于目录汇总修复
+     *
+     * @param userId 用户ID
+     * @return 文件集合
+     */
+    List<DiskFile> selectAllByUserIdForUpdate(Long userId);
+
+    /**
+     * 目录汇总增量更新：父目录及其未删除的祖先目录
+     *
+     * @param parentId 父目录ID
+     * @param size 大小增量
+     * @param count 数量增量
+     * @return 结果
+     */
+    int updateAncestorSubtree(@Param("parentId") Long parentId, @Param("size") long size, @Param("count") long count);
+
+    /**
+     * 覆盖目录汇总
+     */
+    int updateSubtreeAggregate(@Param("id") Long id, @Param("size") long size, @Param("count") long count);
 }
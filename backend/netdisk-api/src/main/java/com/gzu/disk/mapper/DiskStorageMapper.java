@@ -65,4 +65,22 @@ public interface DiskStorageMapper
     int updateUsedCapacity(@Param("id") Long id,@Param("usedCapacity") long usedCapacity);
 
     int updateUsedCapacityByUserId(@Param("userId") Long userId, @Param("usedCapacity") long usedCapacity);
+
+    /**
+     * 原子占用容量，占用后超过总容量时不更新
+     *
+     * @param userId 用户ID
+     * @param bytes 占用字节数
+     * @return 更新行数，0表示空间不足或存储不存在
+     */
+    int reserveUsedCapacity(@Param("userId") Long userId, @Param("bytes") long bytes);
+
+    /**
+     * 原子释放容量
+     *
+     * @param userId 用户ID
+     * @param bytes 释放字节数
+     * @return 更新行数
+     */
+    int releaseUsedCapacity(@Param("userId") Long userId, @Param("bytes") long bytes);
 }
@@ -0,0 +1,75 @@
+package com.gzu.disk.service;
+
+import com.gzu.disk.domain.BackChunk;
+import com.gzu.disk.domain.BackFileContent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * 文件内容索引Service接口
+ * 负责服务端增量计算上传文件的MD5，以及秒传判断（布隆过滤器 + LRU缓存 + 数据库）
+ */
+public interface IBackFileContentService
+{
+    /**
+     * 根据内容哈希查询已校验的文件内容，依次经过布隆过滤器、LRU缓存和数据库；
+     * 合并后的文件已不存在时删除该索引并返回null
+     *
+     * @param hash 文件MD5
+     * @return 文件内容索引，不存在时返回null
+     */
+    public BackFileContent selectByHash(String hash);
+
+    /**
+     * 登记已校验的文件内容
+     *
+     * @param content 文件内容索引
+     */
+    public void register(BackFileContent content);
+
+    /**
+     * 申请计算当前分片的哈希，只有当前分片正好是下一个待计算的分片且没有其他请求在计算时才会成功
+     *
+     * @param chunk 分片信息
+     * @return 已计算部分的摘要副本，调用方用它计算本分片后交给 {@link #completeChunk}；申请失败时返回null
+     */
+    public MessageDigest claimChunk(BackChunk chunk);
+
+    /**
+     * 分片写入结束后回调，提交已计算的摘要，或记录未能即时计算的分片，并补算后续已到达的分片
+     *
+     * @param chunk   分片信息
+     * @param digest  {@link #claimChunk} 返回的摘要，未申请成功时为null
+     * @param success 分片是否写入成功
+     * @param reader  读取已存储分片的方式，用于补算乱序到达的分片
+     */
+    public void completeChunk(BackChunk chunk, MessageDigest digest, boolean success, ChunkReader reader);
+
+    /**
+     * 取出增量计算的结果，全部分片都已按序计算且总长度一致时返回十六进制MD5，否则返回null
+     *
+     * @param identifier 文件标识
+     * @param filename   文件名
+     * @param totalSize  文件总大小
+     * @return 文件MD5
+     */
+    public String finishHash(String identifier, String filename, Long totalSize);
+
+    /**
+     * 秒传索引统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getMetrics();
+
+    /**
+     * 读取已存储的分片
+     */
+    interface ChunkReader
+    {
+        InputStream open(BackChunk chunk) throws IOException;
+    }
+}
@@ -6,6 +6,7 @@ import com.gzu.disk.domain.BackFilelist;
 import com.gzu.disk.domain.vo.CheckChunkVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
 
 public interface IBackFileService {
 
@@ -16,4 +17,9 @@ public interface IBackFileService {
     int deleteBackFileByIds(Long id);
 
     String mergeFile(BackFilelist fileInfo);
+
+    /**
+     * 分片上传的内存统计：请求数、单次请求平均/最大堆内存分配、并发数
+     */
+    Map<String, Object> getUploadMetrics();
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.gzu.disk.service;
+
+import com.gzu.disk.domain.DiskBlob;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * 文件内容存储Service接口
+ * 按内容MD5寻址，相同内容只保存一份物理文件
+ */
+public interface IDiskBlobService
+{
+    /**
+     * 保存上传的文件内容，内容已存在时只增加引用次数
+     *
+     * @param file 上传的文件
+     * @return 文件内容存储
+     */
+    public DiskBlob store(MultipartFile file) throws IOException;
+
+    /**
+     * 释放一次引用，引用次数为0时删除物理文件
+     *
+     * @param hash 内容MD5
+     */
+    public void release(String hash);
+}
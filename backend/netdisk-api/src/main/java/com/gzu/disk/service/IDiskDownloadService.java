@@ -0,0 +1,21 @@
+package com.gzu.disk.service;
+
+import com.gzu.disk.domain.DiskFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 文件打包下载Service接口
+ */
+public interface IDiskDownloadService
+{
+    /**
+     * 将选中的文件和文件夹（递归包含子文件）以zip格式写入输出流，不落地临时文件
+     *
+     * @param diskFiles 选中的文件和文件夹
+     * @param os 输出流，由调用方负责关闭
+     */
+    public void writeZip(List<DiskFile> diskFiles, OutputStream os) throws IOException;
+}
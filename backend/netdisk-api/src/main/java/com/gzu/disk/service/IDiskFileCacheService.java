@@ -0,0 +1,49 @@
+package com.gzu.disk.service;
+
+import com.gzu.disk.domain.DiskFile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件元数据缓存Service接口
+ * 本地缓存按ID的文件和按父目录的子文件列表，文件变更时按用户整体失效，并通过Redis通知其他节点
+ */
+public interface IDiskFileCacheService
+{
+    /**
+     * 按ID查询未删除的文件
+     *
+     * @param id 文件ID
+     * @return 文件副本，不存在时为null
+     */
+    public DiskFile selectById(Long id);
+
+    /**
+     * 查询目录下未删除的子文件
+     *
+     * @param userId 用户ID
+     * @param parentId 目录ID，0表示根目录
+     * @return 子文件副本
+     */
+    public List<DiskFile> selectChildren(Long userId, Long parentId);
+
+    /**
+     * 失效用户的全部缓存，当前事务提交后再次失效并通知其他节点
+     *
+     * @param userId 用户ID，为空时失效全部用户
+     */
+    public void evictUser(Long userId);
+
+    /**
+     * 失效这些文件所属用户的缓存
+     *
+     * @param files 变更的文件
+     */
+    public void evictFiles(List<DiskFile> files);
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getMetrics();
+}
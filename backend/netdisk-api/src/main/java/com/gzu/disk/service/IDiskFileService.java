@@ -1,10 +1,13 @@
 package com.gzu.disk.service;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import com.gzu.disk.domain.DiskFile;
 import com.gzu.disk.domain.DiskStorage;
+import com.gzu.disk.domain.vo.FileCursorVO;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * 文件Service接口
@@ -22,6 +25,15 @@ public interface IDiskFileService
      */
     public DiskFile selectDiskFileById(Long id);
 
+    /**
+     * 查询目录下未删除的子文件，结果来自本地缓存
+     *
+     * @param userId 用户ID
+     * @param parentId 目录ID，0表示根目录
+     * @return 子文件集合
+     */
+    public List<DiskFile> selectChildren(Long userId, Long parentId);
+
     /**
      * 查询文件列表
      * 
@@ -30,6 +42,25 @@ public interface IDiskFileService
      */
     public List<DiskFile> selectDiskFileList(DiskFile diskFile);
 
+    /**
+     * 查询列表页文件，目录的大小为其子树汇总大小
+     *
+     * @param diskFile 文件
+     * @return 文件集合
+     */
+    public List<DiskFile> selectDiskFileListing(DiskFile diskFile);
+
+    /**
+     * 游标分页查询文件列表，不查询总数
+     *
+     * @param diskFile 查询条件，使用 createId、parentId、type
+     * @param lastId 上一页最后一条记录的ID，为空时查询第一页
+     * @param sortKey 排序字段 id（默认，按ID倒序）或 name（按名称正序）
+     * @param pageSize 每页条数
+     * @return 分页结果
+     */
+    public FileCursorVO selectDiskFileCursor(DiskFile diskFile, Long lastId, String sortKey, int pageSize);
+
     /**
      * 新增文件
      * 
@@ -74,14 +105,53 @@ public interface IDiskFileService
 
     List<DiskFile> selectDiskFileListByIdsIgnoreDel(Long[] ids);
 
-    List<DiskFile> selectAll();
+    int refresh(Long[] ids);
 
-     List<DiskFile> getChildPerms(List<DiskFile> list,List<DiskFile> allList, Long parentId);
+    /**
+     * 查询文件及其所有子孙文件，按物化路径一次查询
+     *
+     * @param ids 文件ID
+     * @param includeDeleted 是否包含已移入回收站的文件
+     * @return 文件集合，包含传入的文件本身
+     */
+    List<DiskFile> selectSubtreeByIds(Long[] ids, boolean includeDeleted);
 
-    int refresh(Long[] ids);
+    /**
+     * 将文件及其所有子孙文件移入回收站
+     *
+     * @param ids 文件ID
+     * @return 结果
+     */
+    int removeDiskFileTreeByIds(Long[] ids);
+
+    /**
+     * 从回收站还原文件及其所有子孙文件
+     *
+     * @param ids 文件ID
+     * @return 结果
+     */
+    int refreshTree(Long[] ids);
+
+    /**
+     * 移动文件或文件夹到另一个文件夹
+     *
+     * @param ids 文件ID
+     * @param parentId 目标文件夹ID，0表示根目录
+     * @return 结果
+     */
+    int moveDiskFiles(Long[] ids, Long parentId);
 
     int save(DiskFile diskFile, DiskStorage diskStorage);
 
+    /**
+     * 保存上传的文件，文件内容经过去重存储，相同内容只保存一份物理文件
+     * @param diskFile 文件记录
+     * @param diskStorage 用户存储
+     * @param file 上传的文件
+     * @return
+     */
+    int save(DiskFile diskFile, DiskStorage diskStorage, MultipartFile file) throws IOException;
+
     List<DiskFile> selectAllByUserId(Long userId);
 
     List<DiskFile> selectAllByUserIdIgnoreDel(Long userId);
@@ -99,10 +169,35 @@ public interface IDiskFileService
      */
     int deleteDiskFileByIdsAndRemoveFile(List<Long> delFileIds);
 
+    /**
+     * 清理物理文件已不存在的记录：删除其中仍未删除的记录，释放去重内容的引用，并按用户汇总释放存储容量
+     * 一致性扫描和文件监听共用，加入调用方的事务，没有事务时自行开启
+     *
+     * @param files 物理文件已不存在的记录
+     * @return 删除的记录数
+     */
+    int deleteMissingFiles(List<DiskFile> files);
+
     /**
      * 获取用户的所有文件id
      * @param userId
      * @return
      */
     List<Long> selectAllIdsByUserId(Long userId);
+
+    /**
+     * 按实际数据重新计算目录汇总（目录大小和数量），修正增量维护产生的偏差；
+     * 每个用户在独立的事务中锁定其全部记录后计算，不会覆盖并发的增量更新
+     *
+     * @param userId 用户ID，为空时处理所有用户
+     * @return 修正的目录数量
+     */
+    int repairSubtreeAggregates(Long userId);
+
+    /**
+     * 按父目录关系重新生成物化路径，修正缺失或不一致的路径
+     *
+     * @return 修正的文件数量
+     */
+    int repairPaths();
 }
@@ -0,0 +1,42 @@
+package com.gzu.disk.service;
+
+import com.gzu.disk.domain.DiskStorage;
+
+import java.util.Map;
+
+/**
+ * 存储容量配额Service接口
+ * 已用容量只做增量更新，不再读出后写回绝对值
+ */
+public interface IDiskQuotaService
+{
+    /**
+     * 在写入文件之前占用容量，空间不足时抛出异常
+     * 占用立即生效，不随当前事务提交；当前事务回滚时自动释放
+     *
+     * @param storage 用户存储
+     * @param bytes 占用字节数
+     */
+    public void reserve(DiskStorage storage, long bytes);
+
+    /**
+     * 释放容量
+     *
+     * @param userId 用户ID
+     * @param bytes 释放字节数
+     */
+    public void release(Long userId, long bytes);
+
+    /**
+     * 将已用容量重置为指定值，用于格式化等整体修正
+     *
+     * @param userId 用户ID
+     * @param usedCapacity 已用容量
+     */
+    public void reset(Long userId, long usedCapacity);
+
+    /**
+     * 配额统计信息
+     */
+    public Map<String, Object> getMetrics();
+}
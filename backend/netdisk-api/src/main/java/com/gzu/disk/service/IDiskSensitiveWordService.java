@@ -67,4 +67,9 @@ public interface IDiskSensitiveWordService
      * @return 是否有敏感词 是：true 否：false
      */
     boolean filterSensitiveWord(String text);
+
+    /**
+     * 从数据库重新加载词库并替换匹配器
+     */
+    void reload();
 }
@@ -61,6 +61,15 @@ public interface IDiskStorageService
 
     DiskStorage selectDiskStorageByUserId(Long userId);
 
+    /**
+     * 获取用户存储，不存在时按默认容量创建
+     * 只在写入路径上调用，查询接口不再顺带初始化
+     *
+     * @param userId 用户ID
+     * @return 用户存储
+     */
+    DiskStorage initDiskStorage(Long userId);
+
     int updateUsedCapacity(Long id, long usedCapacity);
 
     boolean updateUsedCapacityByUserId(Long userId, long l);
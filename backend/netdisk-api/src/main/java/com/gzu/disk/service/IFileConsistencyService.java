@@ -19,6 +19,14 @@ public interface IFileConsistencyService {
      * @return 清理结果统计
      */
     Map<String, Object> checkAndCleanInvalidFiles(Long userId);
+
+    /**
+     * 从上次的进度继续检查并清理下一批文件，按文件ID顺序推进，到末尾后从头开始新一轮
+     * 每批在独立事务中清理并记录进度，单次检查的文件数不超过 disk.consistency.maxRowsPerTick
+     *
+     * @return 本次检查结果统计
+     */
+    Map<String, Object> checkNextSlices();
     
     /**
      * 检查单个文件是否存在
@@ -27,6 +35,14 @@ public interface IFileConsistencyService {
      * @return true-文件存在，false-文件不存在
      */
     boolean checkFileExists(Long fileId);
+
+    /**
+     * 检查已查询出的文件记录对应的物理文件是否存在，结果短期缓存
+     *
+     * @param file 文件记录
+     * @return true-文件存在，false-文件不存在
+     */
+    boolean checkFileExists(DiskFile file);
     
     /**
      * 获取所有无效的文件记录
@@ -43,5 +59,30 @@ public interface IFileConsistencyService {
      * @return 文件ID和存在状态的映射
      */
     Map<Long, Boolean> batchCheckFilesExist(List<Long> fileIds);
+
+    /**
+     * 批量检查文件是否存在
+     * 用一次 IN 查询读取记录，按所在目录分组，每个目录列举一次，结果短期缓存
+     *
+     * @param ids 文件ID
+     * @param userId 用户ID，不为null时只检查该用户的文件
+     * @return 文件ID和存在状态的映射，记录不存在或不属于该用户时为false
+     */
+    Map<Long, Boolean> checkFilesExist(Long[] ids, Long userId);
+
+    /**
+     * 找出物理文件不存在的记录，按所在目录分组，每个目录只列举一次
+     *
+     * @param files 文件记录，目录会被忽略
+     * @return 物理文件不存在的记录
+     */
+    List<DiskFile> findMissingFiles(List<DiskFile> files);
+
+    /**
+     * 一致性检查统计信息
+     *
+     * @return 检查次数、检查文件数、列举目录数、最近一次耗时和吞吐量等
+     */
+    Map<String, Object> getMetrics();
 }
 
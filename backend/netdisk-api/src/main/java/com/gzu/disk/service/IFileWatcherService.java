@@ -1,5 +1,7 @@
 package com.gzu.disk.service;
 
+import java.util.Map;
+
 /**
  * 文件监控服务接口
  * 
@@ -18,7 +20,7 @@ public interface IFileWatcherService {
     void stopWatching();
     
     /**
-     * 重新加载监控目录
+     * 重新加载监控目录，只补充新出现的目录并移除已不存在的目录
      */
     void reloadWatchDirectories();
     
@@ -28,5 +30,12 @@ public interface IFileWatcherService {
      * @return true-运行中，false-已停止
      */
     boolean isWatching();
+
+    /**
+     * 监控统计信息
+     *
+     * @return 监控目录数、事件数、批次数、溢出和重新检查次数等
+     */
+    Map<String, Object> getMetrics();
 }
 
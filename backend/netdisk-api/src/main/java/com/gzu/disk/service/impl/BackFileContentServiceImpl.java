@@ -0,0 +1,427 @@
+package com.gzu.disk.service.impl;
+
+import cn.hutool.core.util.HexUtil;
+import com.gzu.common.utils.BloomFilter;
+import com.gzu.common.utils.DateUtils;
+import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.disk.domain.BackChunk;
+import com.gzu.disk.domain.BackFileContent;
+import com.gzu.disk.mapper.BackFileContentMapper;
+import com.gzu.disk.service.IBackFileContentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件内容索引Service业务层处理
+ * 秒传判断依次经过布隆过滤器（判定不存在即返回）、LRU缓存和数据库，命中后确认合并后的文件仍然存在；
+ * 分片到达时按序增量计算MD5，计算状态保存在本节点内存中，不可用时由合并流程回退为整文件计算
+ */
+@Service
+public class BackFileContentServiceImpl implements IBackFileContentService
+{
+    private static final Logger log = LoggerFactory.getLogger(BackFileContentServiceImpl.class);
+
+    /** 增量计算状态的过期时间，超过该时间没有新分片到达的上传视为已放弃 */
+    private static final long STATE_EXPIRE_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private BackFileContentMapper backFileContentMapper;
+
+    /** 布隆过滤器预计容纳的文件数量，超出后误判率会升高，但不影响正确性 */
+    @Value("${disk.upload.contentBloomExpected:1000000}")
+    private long bloomExpected;
+
+    /** LRU缓存的文件内容条数 */
+    @Value("${disk.upload.contentCacheSize:10000}")
+    private int cacheSize;
+
+    private volatile BloomFilter bloomFilter;
+
+    private Map<String, BackFileContent> cache;
+
+    /** 正在上传的文件的增量计算状态，key 为 文件标识/文件名 */
+    private final Map<String, HashState> states = new ConcurrentHashMap<>();
+
+    private final LongAdder bloomRejects = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder dbLookups = new LongAdder();
+
+    private final LongAdder staleEntries = new LongAdder();
+
+    private final LongAdder incrementalHashes = new LongAdder();
+
+    private final LongAdder catchUpChunks = new LongAdder();
+
+    @PostConstruct
+    public void init()
+    {
+        int capacity = Math.max(16, cacheSize);
+        cache = new LinkedHashMap<String, BackFileContent>(capacity, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BackFileContent> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+        List<String> hashes = backFileContentMapper.selectAllHashes();
+        BloomFilter filter = new BloomFilter(Math.max(bloomExpected, hashes.size() * 2L), 0.01);
+        hashes.forEach(filter::put);
+        bloomFilter = filter;
+        log.info("文件内容索引加载完成, 数量: {}", hashes.size());
+    }
+
+    @Override
+    public BackFileContent selectByHash(String hash)
+    {
+        if (hash == null || hash.isEmpty())
+        {
+            return null;
+        }
+        String key = hash.toLowerCase();
+        if (!bloomFilter.mightContain(key))
+        {
+            bloomRejects.increment();
+            return null;
+        }
+        BackFileContent content;
+        synchronized (cache)
+        {
+            content = cache.get(key);
+        }
+        if (content != null)
+        {
+            cacheHits.increment();
+        }
+        else
+        {
+            dbLookups.increment();
+            content = backFileContentMapper.selectBackFileContentByHash(key);
+            if (content == null)
+            {
+                return null;
+            }
+            synchronized (cache)
+            {
+                cache.put(key, content);
+            }
+        }
+        Boolean exists = locationExists(content);
+        if (exists == null)
+        {
+            // 暂时无法确认时不秒传，也不删除索引
+            return null;
+        }
+        if (!exists)
+        {
+            // 合并后的文件已被删除，索引不能再用于秒传
+            staleEntries.increment();
+            synchronized (cache)
+            {
+                cache.remove(key);
+            }
+            backFileContentMapper.deleteBackFileContentById(content.getId());
+            log.info("文件内容 {} 已不存在，移除秒传索引: {}", key, content.getLocation());
+            return null;
+        }
+        return content;
+    }
+
+    /**
+     * 索引指向的合并后文件是否仍然存在，检查出错时返回null
+     */
+    private Boolean locationExists(BackFileContent content)
+    {
+        String location = content.getLocation();
+        if (location == null || location.isEmpty())
+        {
+            return false;
+        }
+        try
+        {
+            return HdfsUtils.isHdfsEnabled() ? HdfsUtils.exists(location) : Files.exists(Paths.get(location));
+        }
+        catch (Exception e)
+        {
+            log.warn("检查文件内容 {} 是否存在时出错: {}", location, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void register(BackFileContent content)
+    {
+        content.setHash(content.getHash().toLowerCase());
+        content.setCreateTime(DateUtils.getNowDate());
+        backFileContentMapper.insertBackFileContent(content);
+        bloomFilter.put(content.getHash());
+        BackFileContent stored = backFileContentMapper.selectBackFileContentByHash(content.getHash());
+        if (stored != null)
+        {
+            synchronized (cache)
+            {
+                cache.put(stored.getHash(), stored);
+            }
+        }
+    }
+
+    @Override
+    public MessageDigest claimChunk(BackChunk chunk)
+    {
+        HashState state = states.computeIfAbsent(stateKey(chunk.getIdentifier(), chunk.getFilename()), k -> new HashState());
+        synchronized (state)
+        {
+            state.lastAccess = System.currentTimeMillis();
+            if (state.broken || state.claimed || chunk.getChunkNumber() != state.next)
+            {
+                return null;
+            }
+            state.claimed = true;
+            return state.copyDigest();
+        }
+    }
+
+    @Override
+    public void completeChunk(BackChunk chunk, MessageDigest digest, boolean success, ChunkReader reader)
+    {
+        HashState state = states.get(stateKey(chunk.getIdentifier(), chunk.getFilename()));
+        if (state == null)
+        {
+            return;
+        }
+        synchronized (state)
+        {
+            if (digest != null)
+            {
+                state.claimed = false;
+                if (success)
+                {
+                    long length = chunk.getFile() != null ? chunk.getFile().getSize() : chunk.getCurrentChunkSize();
+                    state.commit(digest, length);
+                    incrementalHashes.increment();
+                }
+            }
+            else if (chunk.getChunkNumber() < state.next || (chunk.getChunkNumber() == state.next && state.claimed))
+            {
+                // 已计算或正在计算的分片被重新上传，磁盘上的内容可能已与摘要不一致，改由合并流程整文件计算
+                state.broken = true;
+            }
+            else if (success)
+            {
+                state.stored.put(chunk.getChunkNumber(), detach(chunk));
+            }
+        }
+        catchUp(state, reader);
+    }
+
+    /**
+     * 补算已经存储、但到达时未轮到计算的分片
+     */
+    private void catchUp(HashState state, ChunkReader reader)
+    {
+        byte[] buffer = null;
+        while (true)
+        {
+            BackChunk chunk;
+            MessageDigest digest;
+            synchronized (state)
+            {
+                state.stored.headMap(state.next).clear();
+                if (state.broken || state.claimed || !state.stored.containsKey(state.next))
+                {
+                    return;
+                }
+                chunk = state.stored.remove(state.next);
+                state.claimed = true;
+                digest = state.copyDigest();
+                if (digest == null)
+                {
+                    return;
+                }
+            }
+            if (buffer == null)
+            {
+                buffer = new byte[READ_BUFFER_SIZE];
+            }
+            long length = 0;
+            boolean success = false;
+            try (InputStream in = reader.open(chunk))
+            {
+                int n;
+                while ((n = in.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, n);
+                    length += n;
+                }
+                success = true;
+            }
+            catch (IOException e)
+            {
+                log.warn("补算分片哈希失败: {}-{}", chunk.getFilename(), chunk.getChunkNumber(), e);
+            }
+            synchronized (state)
+            {
+                state.claimed = false;
+                if (success)
+                {
+                    state.commit(digest, length);
+                    catchUpChunks.increment();
+                }
+                else
+                {
+                    state.broken = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String finishHash(String identifier, String filename, Long totalSize)
+    {
+        HashState state = states.remove(stateKey(identifier, filename));
+        if (state == null || totalSize == null)
+        {
+            return null;
+        }
+        synchronized (state)
+        {
+            if (state.broken || state.claimed || state.length != totalSize)
+            {
+                return null;
+            }
+            return HexUtil.encodeHexStr(state.digest.digest());
+        }
+    }
+
+    /**
+     * 清理长时间没有新分片到达的增量计算状态
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void evictExpiredStates()
+    {
+        long deadline = System.currentTimeMillis() - STATE_EXPIRE_MILLIS;
+        states.entrySet().removeIf(entry -> entry.getValue().lastAccess < deadline);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics()
+    {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("bloomRejects", bloomRejects.sum());
+        metrics.put("cacheHits", cacheHits.sum());
+        metrics.put("dbLookups", dbLookups.sum());
+        metrics.put("staleEntries", staleEntries.sum());
+        metrics.put("incrementalHashes", incrementalHashes.sum());
+        metrics.put("catchUpChunks", catchUpChunks.sum());
+        metrics.put("hashingUploads", states.size());
+        synchronized (cache)
+        {
+            metrics.put("cacheSize", cache.size());
+        }
+        return metrics;
+    }
+
+    private static String stateKey(String identifier, String filename)
+    {
+        return identifier + "/" + filename;
+    }
+
+    /**
+     * 复制分片信息，不保留上传的文件对象
+     */
+    private static BackChunk detach(BackChunk chunk)
+    {
+        BackChunk copy = new BackChunk();
+        copy.setIdentifier(chunk.getIdentifier());
+        copy.setFilename(chunk.getFilename());
+        copy.setChunkNumber(chunk.getChunkNumber());
+        copy.setChunkSize(chunk.getChunkSize());
+        copy.setCurrentChunkSize(chunk.getCurrentChunkSize());
+        copy.setTotalSize(chunk.getTotalSize());
+        copy.setTotalChunks(chunk.getTotalChunks());
+        return copy;
+    }
+
+    /**
+     * 单个文件的增量计算状态，所有字段在持有该对象锁时访问
+     */
+    private static class HashState
+    {
+        /** 已按序计算到的摘要 */
+        private MessageDigest digest;
+
+        /** 下一个待计算的分片编号 */
+        private int next = 1;
+
+        /** 已计算的字节数 */
+        private long length;
+
+        /** 是否有请求正在计算下一个分片 */
+        private boolean claimed;
+
+        /** 补算失败或已计算的分片被重新上传后不再增量计算，由合并流程整文件计算 */
+        private boolean broken;
+
+        /** 已存储但尚未计算的分片 */
+        private final TreeMap<Integer, BackChunk> stored = new TreeMap<>();
+
+        private long lastAccess = System.currentTimeMillis();
+
+        HashState()
+        {
+            try
+            {
+                digest = MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        MessageDigest copyDigest()
+        {
+            try
+            {
+                return (MessageDigest) digest.clone();
+            }
+            catch (CloneNotSupportedException e)
+            {
+                broken = true;
+                claimed = false;
+                return null;
+            }
+        }
+
+        void commit(MessageDigest digest, long chunkLength)
+        {
+            this.digest = digest;
+            this.length += chunkLength;
+            this.next++;
+        }
+    }
+}
@@ -2,29 +2,65 @@ package com.gzu.disk.service.impl;
 
 import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
+import com.gzu.common.utils.file.ByteBufferPool;
 import com.gzu.common.utils.hdfs.HdfsUtils;
 import com.gzu.disk.domain.BackChunk;
+import com.gzu.disk.domain.BackFileContent;
 import com.gzu.disk.domain.BackFilelist;
 import com.gzu.disk.domain.vo.CheckChunkVO;
 import com.gzu.disk.mapper.BackChunkMapper;
 import com.gzu.disk.mapper.BackFilelistMapper;
+import com.gzu.disk.service.IBackFileContentService;
 import com.gzu.disk.service.IBackFileService;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BackFileServiceImpl implements IBackFileService {
@@ -33,12 +69,77 @@ public class BackFileServiceImpl implements IBackFileService {
 
     private final static String folderPath = "/file";
 
+    /** 合并分片时使用的缓冲区大小 */
+    private final static int MERGE_BUFFER_SIZE = 64 * 1024;
+
+    /** 直写模式下未完成文件的后缀 */
+    private final static String PART_SUFFIX = ".part";
+
+    /** 用于统计每次上传请求的线程堆内存分配，JVM不支持时为null */
+    private final static com.sun.management.ThreadMXBean THREAD_MX_BEAN = initThreadMXBean();
+
+    /** 分片上传请求数 */
+    private final LongAdder uploadRequests = new LongAdder();
+
+    /** 分片上传请求累计分配的堆内存 */
+    private final LongAdder uploadAllocatedBytes = new LongAdder();
+
+    /** 单次分片上传请求分配的最大堆内存 */
+    private final AtomicLong uploadMaxAllocatedBytes = new AtomicLong();
+
+    /** 正在处理的分片上传请求数 */
+    private final AtomicLong uploadInFlight = new AtomicLong();
+
+    /** 同时处理的分片上传请求峰值 */
+    private final AtomicLong uploadPeakInFlight = new AtomicLong();
+
     @Autowired
     private BackChunkMapper backChunkMapper;
 
     @Autowired
     private BackFilelistMapper backFilelistMapper;
 
+    @Autowired
+    private IBackFileContentService backFileContentService;
+
+    /** 本地合并的并行度，大于1时按偏移量并行写入预分配的目标文件 */
+    @Value("${disk.upload.mergeParallelism:1}")
+    private int mergeParallelism;
+
+    /**
+     * 并行合并的协助线程池，所有合并共用，线程数不超过合并并行度且不排队；
+     * 线程都在忙时由发起合并的线程独自写完，不占用公共线程池，也不会在请求线程上无限堆积任务
+     */
+    private ExecutorService mergeExecutor;
+
+    /** 直写模式：分片在上传时直接写入目标文件的对应偏移量，合并时只做校验和重命名（仅本地存储） */
+    @Value("${disk.upload.directPlacement:false}")
+    private boolean directPlacement;
+
+    /** 直写模式合并时是否重新计算MD5并与文件标识比对 */
+    @Value("${disk.upload.verifyMd5:false}")
+    private boolean verifyMd5;
+
+    @PostConstruct
+    public void init() {
+        if (mergeParallelism > 1) {
+            AtomicInteger sequence = new AtomicInteger();
+            mergeExecutor = new ThreadPoolExecutor(0, mergeParallelism, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    r -> {
+                        Thread thread = new Thread(r, "chunk-merge-" + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (mergeExecutor != null) {
+            mergeExecutor.shutdownNow();
+        }
+    }
+
     /**
      * 每一个上传块都会包含如下分块信息：
      * chunkNumber: 当前块的次序，第一个块是 1，注意不是从 0 开始的。
@@ -63,30 +164,141 @@ public class BackFileServiceImpl implements IBackFileService {
         int result = Constants.UPDATE_FAIL;
         MultipartFile file = chunk.getFile();
         log.debug("file originName: {}, chunkNumber: {}", file.getOriginalFilename(), chunk.getChunkNumber());
-        
+
+        long allocatedBefore = currentThreadAllocatedBytes();
+        long inFlight = uploadInFlight.incrementAndGet();
+        uploadPeakInFlight.accumulateAndGet(inFlight, Math::max);
+        ByteBuffer buffer = ByteBufferPool.acquire();
+        // 轮到该分片时在写入的同时增量计算文件MD5，否则先存储，由后续分片补算
+        MessageDigest digest = backFileContentService.claimChunk(chunk);
+        boolean success = false;
         try {
             // 判断是否使用HDFS
             if (HdfsUtils.isHdfsEnabled()) {
                 // 使用HDFS存储分片
                 String hdfsPath = generateHdfsPath(folderPath, chunk);
-                HdfsUtils.uploadBytes(chunk.getFile().getBytes(), hdfsPath);
+                try (InputStream in = openUpload(file, digest);
+                     FSDataOutputStream out = HdfsUtils.create(hdfsPath)) {
+                    byte[] bytes = buffer.array();
+                    int n;
+                    while ((n = in.read(bytes)) != -1) {
+                        out.write(bytes, 0, n);
+                    }
+                }
                 log.debug("文件块上传到HDFS成功 {} , md5:{}", chunk.getFilename(), chunk.getIdentifier());
+            } else if (directPlacement) {
+                // 直写模式：写入目标文件的 (chunkNumber-1)*chunkSize 位置
+                Path path = Paths.get(generatePartPath(RuoYiConfig.getUploadPath() + folderPath, chunk));
+                long position = (chunk.getChunkNumber() - 1) * chunk.getChunkSize();
+                try (InputStream in = openUpload(file, digest);
+                     FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    copy(in, out, position, buffer);
+                }
+                log.debug("文件块直写本地成功 {} , md5:{}", chunk.getFilename(), chunk.getIdentifier());
             } else {
                 // 使用本地存储
                 Path path = Paths.get(generatePath(RuoYiConfig.getUploadPath() + folderPath, chunk));
-                Files.write(path, chunk.getFile().getBytes());
+                try (InputStream in = openUpload(file, digest);
+                     FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    copy(in, out, 0, buffer);
+                }
                 log.debug("文件块写入本地成功 {} , md5:{}", chunk.getFilename(), chunk.getIdentifier());
             }
             result = backChunkMapper.insertBackChunk(chunk);
             //写入数据库
+            success = result > 0;
         } catch (IOException e) {
             e.printStackTrace();
             response.setStatus(507);
             return Constants.UPDATE_FAIL;
+        } finally {
+            ByteBufferPool.release(buffer);
+            backFileContentService.completeChunk(chunk, digest, success, this::openChunk);
+            uploadInFlight.decrementAndGet();
+            recordUploadAllocation(allocatedBefore);
         }
         return result;
     }
-    
+
+    /**
+     * 打开上传分片的输入流，申请到摘要时边读边计算
+     */
+    private static InputStream openUpload(MultipartFile file, MessageDigest digest) throws IOException {
+        InputStream in = file.getInputStream();
+        return digest == null ? in : new DigestInputStream(in, digest);
+    }
+
+    /**
+     * 读取已存储的分片，用于补算乱序到达分片的哈希
+     */
+    private InputStream openChunk(BackChunk chunk) throws IOException {
+        if (HdfsUtils.isHdfsEnabled()) {
+            return HdfsUtils.open(generateHdfsPath(folderPath, chunk));
+        }
+        if (directPlacement) {
+            Path part = Paths.get(generatePartPath(RuoYiConfig.getUploadPath() + folderPath, chunk));
+            FileChannel channel = FileChannel.open(part, StandardOpenOption.READ);
+            channel.position((chunk.getChunkNumber() - 1) * chunk.getChunkSize());
+            return new BoundedInputStream(Channels.newInputStream(channel), chunk.getCurrentChunkSize());
+        }
+        return Files.newInputStream(Paths.get(generatePath(RuoYiConfig.getUploadPath() + folderPath, chunk)));
+    }
+
+    /**
+     * 将输入流写入文件通道的指定位置，使用传入的缓冲区中转
+     */
+    private static void copy(InputStream in, FileChannel out, long position, ByteBuffer buffer) throws IOException {
+        byte[] bytes = buffer.array();
+        int n;
+        while ((n = in.read(bytes)) != -1) {
+            buffer.clear();
+            buffer.limit(n);
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+        }
+    }
+
+    /**
+     * 当前线程累计分配的堆内存字节数，JVM不支持时返回 -1
+     */
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN == null) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 记录一次分片上传请求在当前线程上分配的堆内存
+     */
+    private void recordUploadAllocation(long allocatedBefore) {
+        if (allocatedBefore < 0) {
+            return;
+        }
+        long allocated = currentThreadAllocatedBytes() - allocatedBefore;
+        uploadRequests.increment();
+        uploadAllocatedBytes.add(allocated);
+        uploadMaxAllocatedBytes.accumulateAndGet(allocated, Math::max);
+    }
+
+    @Override
+    public Map<String, Object> getUploadMetrics() {
+        long requests = uploadRequests.sum();
+        long allocated = uploadAllocatedBytes.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("allocationTracking", THREAD_MX_BEAN != null);
+        metrics.put("requests", requests);
+        metrics.put("totalAllocatedBytes", allocated);
+        metrics.put("avgAllocatedBytes", requests == 0 ? 0 : allocated / requests);
+        metrics.put("maxAllocatedBytes", uploadMaxAllocatedBytes.get());
+        metrics.put("inFlight", uploadInFlight.get());
+        metrics.put("peakInFlight", uploadPeakInFlight.get());
+        metrics.put("content", backFileContentService.getMetrics());
+        return metrics;
+    }
+
     /**
      * 生成HDFS块文件路径
      */
@@ -99,11 +311,10 @@ public class BackFileServiceImpl implements IBackFileService {
     @Override
     public CheckChunkVO getFileUpload(BackChunk chunk, HttpServletResponse response) {
         CheckChunkVO vo = new CheckChunkVO();
-        //检查该文件是否存在于filelist中,如果存在,直接返回skipUpload为true,执行闪传
-        BackFilelist filelist = new BackFilelist();
-        filelist.setIdentifier(chunk.getIdentifier());
-        List<BackFilelist> backFilelists = backFilelistMapper.selectBackFilelistList(filelist);
-        if (backFilelists != null && !backFilelists.isEmpty()) {
+        //检查该文件内容是否已经由服务端校验过,如果存在,直接返回skipUpload为true,执行闪传
+        //先经过布隆过滤器和LRU缓存,绝大多数新文件不会访问数据库
+        BackFileContent content = backFileContentService.selectByHash(chunk.getIdentifier());
+        if (content != null) {
             response.setStatus(HttpServletResponse.SC_CREATED);
             vo.setSkipUpload(true);
             return vo;
@@ -159,13 +370,29 @@ public class BackFileServiceImpl implements IBackFileService {
                 // 本地模式
                 String file = RuoYiConfig.getUploadPath() + folderPath + "/" + fileInfo.getIdentifier() + "/" + filename;
                 String folder = RuoYiConfig.getUploadPath() + folderPath + "/" + fileInfo.getIdentifier();
-                merge(file, folder, filename);
+                if (directPlacement) {
+                    BackChunk queryChunk = new BackChunk();
+                    queryChunk.setIdentifier(fileInfo.getIdentifier());
+                    queryChunk.setFilename(filename);
+                    commitDirectPlacement(file, fileInfo.getIdentifier(), backChunkMapper.selectBackChunkList(queryChunk));
+                } else if (mergeParallelism > 1) {
+                    BackChunk queryChunk = new BackChunk();
+                    queryChunk.setIdentifier(fileInfo.getIdentifier());
+                    queryChunk.setFilename(filename);
+                    mergeParallel(file, folder, filename, backChunkMapper.selectBackChunkList(queryChunk));
+                } else {
+                    merge(file, folder, filename);
+                }
                 fileInfo.setLocation(file);
             }
         } catch (Exception e) {
             log.error("合并文件失败", e);
             return null;
         }
+
+        if (!verifyContent(fileInfo)) {
+            return null;
+        }
         
         //当前文件已存在数据库中时,返回已存在标识
         if (backFilelistMapper.selectSingleBackFilelist(fileInfo) > 0) {
@@ -184,28 +411,80 @@ public class BackFileServiceImpl implements IBackFileService {
         return url;
     }
     
+    /**
+     * 校验合并后的文件内容与文件标识一致，并登记到文件内容索引
+     * 优先使用上传过程中增量计算的结果，没有时（如服务重启、分片由其他节点接收）对合并后的文件整体计算，
+     * 即使该MD5已在索引中也不跳过，避免任意内容以已知MD5登记为已校验
+     * 校验失败时删除合并后的文件和分片记录，前端需要重新上传
+     */
+    private boolean verifyContent(BackFilelist fileInfo) {
+        String identifier = fileInfo.getIdentifier();
+        String hash = backFileContentService.finishHash(identifier, fileInfo.getFilename(), fileInfo.getTotalSize());
+        try {
+            if (hash == null) {
+                try (InputStream in = HdfsUtils.isHdfsEnabled()
+                        ? HdfsUtils.open(fileInfo.getLocation())
+                        : Files.newInputStream(Paths.get(fileInfo.getLocation()))) {
+                    hash = DigestUtils.md5DigestAsHex(in);
+                }
+            }
+            if (!hash.equalsIgnoreCase(identifier)) {
+                log.error("文件MD5校验失败: {}, 计算值: {}, 文件标识: {}", fileInfo.getLocation(), hash, identifier);
+                if (HdfsUtils.isHdfsEnabled()) {
+                    HdfsUtils.deleteFile(fileInfo.getLocation());
+                } else {
+                    Files.deleteIfExists(Paths.get(fileInfo.getLocation()));
+                }
+                BackChunk backChunk = new BackChunk();
+                backChunk.setIdentifier(identifier);
+                backChunk.setFilename(fileInfo.getFilename());
+                backChunkMapper.deleteBackChunkByIdentifier(backChunk);
+                return false;
+            }
+        } catch (IOException e) {
+            log.error("文件MD5校验失败: {}", fileInfo.getLocation(), e);
+            return false;
+        }
+
+        BackFileContent content = new BackFileContent();
+        content.setHash(hash);
+        content.setTotalSize(fileInfo.getTotalSize());
+        content.setFilename(fileInfo.getFilename());
+        content.setUrl(folderPath + "/" + identifier + "/" + fileInfo.getFilename());
+        content.setLocation(fileInfo.getLocation());
+        backFileContentService.register(content);
+        return true;
+    }
+
     /**
      * HDFS文件合并
+     * 以流的方式逐个分片写入目标文件，内存占用只与缓冲区大小有关，与文件大小无关
      */
     private void mergeHdfs(String targetFile, String folder, String filename, Integer totalChunks) throws IOException {
-        ByteArrayOutputStream mergedOutputStream = new ByteArrayOutputStream();
-        
-        // 按顺序读取每个分片并合并
+        byte[] buffer = new byte[MERGE_BUFFER_SIZE];
+
+        // 按分片编号顺序写入目标文件
+        try (FSDataOutputStream outputStream = HdfsUtils.create(targetFile)) {
+            for (int i = 1; i <= totalChunks; i++) {
+                String chunkPath = folder + "/" + filename + "-" + i;
+                try (FSDataInputStream inputStream = HdfsUtils.open(chunkPath)) {
+                    IOUtils.copyLarge(inputStream, outputStream, buffer);
+                } catch (IOException e) {
+                    log.error("读取HDFS分片文件失败: {}", chunkPath, e);
+                    throw e;
+                }
+            }
+        }
+
+        // 全部写入成功后再删除分片，合并失败时分片仍可用于重试
         for (int i = 1; i <= totalChunks; i++) {
             String chunkPath = folder + "/" + filename + "-" + i;
             try {
-                byte[] chunkData = HdfsUtils.readFileBytes(chunkPath);
-                mergedOutputStream.write(chunkData);
-                // 删除已合并的分片
                 HdfsUtils.deleteFile(chunkPath);
             } catch (IOException e) {
-                log.error("读取或删除HDFS分片文件失败: {}", chunkPath, e);
-                throw e;
+                log.warn("删除HDFS分片文件失败: {}", chunkPath, e);
             }
         }
-        
-        // 将合并后的文件写入HDFS
-        HdfsUtils.uploadBytes(mergedOutputStream.toByteArray(), targetFile);
         log.info("HDFS文件合并完成: {}", targetFile);
     }
 
@@ -233,37 +512,256 @@ public class BackFileServiceImpl implements IBackFileService {
                 .append(chunk.getChunkNumber()).toString();
     }
 
+    /**
+     * 功能描述:生成直写模式下目标临时文件地址
+     *
+     */
+    private String generatePartPath(String uploadFolder, BackChunk chunk) throws IOException {
+        Path folder = Paths.get(uploadFolder, chunk.getIdentifier());
+        if (!Files.isWritable(folder)) {
+            log.info("path not exist,create path: {}", folder);
+            Files.createDirectories(folder);
+        }
+        //文件夹地址/md5/文件名.part
+        return folder.resolve(chunk.getFilename() + PART_SUFFIX).toString();
+    }
+
     /**
      * 文件合并
+     * 分片按编号数值排序后通过 FileChannel.transferTo 拷贝到目标文件，不经过堆内存
      *
      * @param targetFile 要形成的文件名
      * @param folder     要形成的文件夹地址
      * @param filename   文件的名称
      */
-    public static void merge(String targetFile, String folder, String filename) {
+    public static void merge(String targetFile, String folder, String filename) throws IOException {
+        Path target = Paths.get(targetFile);
+        List<Path> chunks;
+        try (Stream<Path> paths = Files.list(Paths.get(folder))) {
+            chunks = paths.filter(path -> chunkNumberOf(path, filename) > 0)
+                    .sorted(Comparator.comparingInt(path -> chunkNumberOf(path, filename)))
+                    .collect(Collectors.toList());
+        }
+        if (chunks.isEmpty()) {
+            if (Files.exists(target)) {
+                log.info("文件已合并: {}", targetFile);
+                return;
+            }
+            throw new IOException("未找到文件分片: " + folder);
+        }
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path chunk : chunks) {
+                try (FileChannel in = FileChannel.open(chunk, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+
+        // 全部写入成功后再删除分片
+        for (Path chunk : chunks) {
+            try {
+                Files.delete(chunk);
+            } catch (IOException e) {
+                log.warn("删除分片文件失败: {}", chunk, e);
+            }
+        }
+    }
+
+    /**
+     * 并行文件合并
+     * 根据分片大小预分配目标文件，按 (chunkNumber-1)*chunkSize 偏移量并行写入各分片；
+     * 当前线程也参与写入，协助线程从合并线程池申请，申请不到时少用几个线程，缓冲区取自缓冲区池
+     *
+     * @param targetFile 要形成的文件名
+     * @param folder     分片所在的文件夹地址
+     * @param filename   文件的名称
+     * @param chunks     数据库中的分片记录
+     */
+    private void mergeParallel(String targetFile, String folder, String filename, List<BackChunk> chunks) throws IOException {
+        Path target = Paths.get(targetFile);
+        if (chunks == null || chunks.isEmpty()) {
+            if (Files.exists(target)) {
+                log.info("文件已合并: {}", targetFile);
+                return;
+            }
+            throw new IOException("未找到文件分片信息: " + folder);
+        }
+
+        List<BackChunk> ordered = completeChunks(chunks);
+        BackChunk first = ordered.get(0);
+        long chunkSize = first.getChunkSize();
+
+        try (RandomAccessFile raf = new RandomAccessFile(target.toFile(), "rw")) {
+            raf.setLength(first.getTotalSize());
+            FileChannel out = raf.getChannel();
+            AtomicInteger next = new AtomicInteger();
+            Callable<Void> worker = () -> {
+                ByteBuffer buffer = ByteBufferPool.acquire();
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < ordered.size()) {
+                        BackChunk chunk = ordered.get(index);
+                        Path chunkPath = Paths.get(folder, filename + "-" + chunk.getChunkNumber());
+                        writeAt(out, chunkPath, (chunk.getChunkNumber() - 1) * chunkSize, buffer);
+                    }
+                    return null;
+                } finally {
+                    ByteBufferPool.release(buffer);
+                }
+            };
+            int helpers = Math.min(mergeParallelism, ordered.size()) - 1;
+            List<Future<?>> futures = new ArrayList<>(helpers);
+            for (int w = 0; w < helpers; w++) {
+                try {
+                    futures.add(mergeExecutor.submit(worker));
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            Throwable failure = null;
+            try {
+                worker.call();
+            } catch (Exception e) {
+                // 让协助线程尽快结束，等它们退出后再关闭目标文件
+                next.set(ordered.size());
+                failure = e;
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    next.set(ordered.size());
+                    failure = failure == null ? new IOException("文件合并被中断", e) : failure;
+                } catch (ExecutionException e) {
+                    next.set(ordered.size());
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+
+        for (BackChunk chunk : ordered) {
+            Path chunkPath = Paths.get(folder, filename + "-" + chunk.getChunkNumber());
+            try {
+                Files.deleteIfExists(chunkPath);
+            } catch (IOException e) {
+                log.warn("删除分片文件失败: {}", chunkPath, e);
+            }
+        }
+        log.info("并行合并完成: {}, 分片数: {}", targetFile, ordered.size());
+    }
+
+    /**
+     * 直写模式下完成合并：校验分片完整性、文件大小（可选MD5）后将临时文件重命名为目标文件
+     *
+     * @param targetFile 要形成的文件名
+     * @param identifier 文件标识,MD5
+     * @param chunks     数据库中的分片记录
+     */
+    private void commitDirectPlacement(String targetFile, String identifier, List<BackChunk> chunks) throws IOException {
+        Path target = Paths.get(targetFile);
+        Path part = Paths.get(targetFile + PART_SUFFIX);
+        if (!Files.exists(part)) {
+            if (Files.exists(target)) {
+                log.info("文件已合并: {}", targetFile);
+                return;
+            }
+            throw new IOException("未找到直写文件: " + part);
+        }
+        if (chunks == null || chunks.isEmpty()) {
+            throw new IOException("未找到文件分片信息: " + identifier);
+        }
+
+        BackChunk first = completeChunks(chunks).get(0);
+        long size = Files.size(part);
+        if (size != first.getTotalSize()) {
+            throw new IOException("文件大小校验失败: " + size + "/" + first.getTotalSize());
+        }
+        if (verifyMd5) {
+            String md5;
+            try (InputStream inputStream = Files.newInputStream(part)) {
+                md5 = DigestUtils.md5DigestAsHex(inputStream);
+            }
+            if (!md5.equalsIgnoreCase(identifier)) {
+                throw new IOException("文件MD5校验失败: " + md5 + "/" + identifier);
+            }
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("直写文件校验完成: {}", targetFile);
+    }
+
+    /**
+     * 按编号去重并排序分片记录（同一分片可能被重复上传），分片不完整时抛出异常
+     */
+    private static List<BackChunk> completeChunks(List<BackChunk> chunks) throws IOException {
+        Map<Integer, BackChunk> chunkMap = new TreeMap<>();
+        chunks.forEach(chunk -> chunkMap.put(chunk.getChunkNumber(), chunk));
+        BackChunk first = chunkMap.values().iterator().next();
+        if (chunkMap.size() != first.getTotalChunks()) {
+            throw new IOException("文件分片不完整: " + chunkMap.size() + "/" + first.getTotalChunks());
+        }
+        return new ArrayList<>(chunkMap.values());
+    }
+
+    /**
+     * 将分片内容写入目标文件的指定位置
+     */
+    private static void writeAt(FileChannel out, Path chunkPath, long position, ByteBuffer buffer) throws IOException {
+        try (FileChannel in = FileChannel.open(chunkPath, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += out.write(buffer, position);
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean initThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析分片文件的编号，文件名格式为 文件名-编号，不匹配时返回 -1
+     */
+    private static int chunkNumberOf(Path path, String filename) {
+        String name = path.getFileName().toString();
+        String prefix = filename + "-";
+        if (!name.startsWith(prefix) || name.length() == prefix.length()) {
+            return -1;
+        }
+        String number = name.substring(prefix.length());
+        for (int i = 0; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return -1;
+            }
+        }
         try {
-            Files.createFile(Paths.get(targetFile));
-            Files.list(Paths.get(folder))
-                    .filter(path -> !path.getFileName().toString().equals(filename))
-                    .sorted((o1, o2) -> {
-                        String p1 = o1.getFileName().toString();
-                        String p2 = o2.getFileName().toString();
-                        int i1 = p1.lastIndexOf("-");
-                        int i2 = p2.lastIndexOf("-");
-                        return Integer.valueOf(p2.substring(i2)).compareTo(Integer.valueOf(p1.substring(i1)));
-                    })
-                    .forEach(path -> {
-                        try {
-                            //以追加的形式写入文件
-                            Files.write(Paths.get(targetFile), Files.readAllBytes(path), StandardOpenOption.APPEND);
-                            //合并后删除该块
-                            Files.delete(path);
-                        } catch (IOException e) {
-                            log.error(e.getMessage(), e);
-                        }
-                    });
-        } catch (IOException e) {
-            log.error(e.getMessage(), e);
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package com.gzu.disk.service.impl;
+
+import cn.hutool.core.util.HexUtil;
+import com.gzu.common.config.RuoYiConfig;
+import com.gzu.common.constant.Constants;
+import com.gzu.common.utils.DateUtils;
+import com.gzu.common.utils.StringUtils;
+import com.gzu.common.utils.file.FileUploadUtils;
+import com.gzu.common.utils.file.FileUtils;
+import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.disk.domain.DiskBlob;
+import com.gzu.disk.mapper.DiskBlobMapper;
+import com.gzu.disk.service.IDiskBlobService;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 文件内容存储Service业务层处理
+ * 物理文件保存在 {profile}/blob/{哈希前两位}/{哈希}.{扩展名}，本地和HDFS使用相同的相对路径；
+ * 同一哈希的引用计数变更和物理文件读写通过数据库行锁协调，锁持有到外层事务结束，多节点之间同样有效
+ */
+@Service
+public class DiskBlobServiceImpl implements IDiskBlobService
+{
+    private static final Logger log = LoggerFactory.getLogger(DiskBlobServiceImpl.class);
+
+    /** 内容存储的相对目录 */
+    private static final String BLOB_DIR = "/blob";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private DiskBlobMapper diskBlobMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init()
+    {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public DiskBlob store(MultipartFile file) throws IOException
+    {
+        // 先写入临时文件并计算MD5，临时文件与内容目录位于同一文件系统，本地存储时可以直接重命名
+        Path tmpDir = Paths.get(RuoYiConfig.getProfile() + BLOB_DIR, "tmp");
+        Files.createDirectories(tmpDir);
+        Path temp = Files.createTempFile(tmpDir, "blob", ".tmp");
+        try
+        {
+            MessageDigest digest = md5();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 OutputStream out = Files.newOutputStream(temp))
+            {
+                IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+            }
+            String hash = HexUtil.encodeHexStr(digest.digest());
+            long size = Files.size(temp);
+
+            DiskBlob candidate = new DiskBlob();
+            candidate.setHash(hash);
+            candidate.setUrl(Constants.RESOURCE_PREFIX + relativePath(hash, FileUploadUtils.getExtension(file)));
+            candidate.setSize(size);
+            candidate.setRefCount(1);
+            candidate.setCreateTime(DateUtils.getNowDate());
+            // 插入或引用加一，同时取得该哈希的行锁并持有到外层事务结束，同一内容的上传、释放和清理在此排队
+            diskBlobMapper.upsertDiskBlob(candidate);
+            DiskBlob blob = diskBlobMapper.selectDiskBlobByHashForUpdate(hash);
+            // 已提交的记录引用数至少为1，加一后为1说明记录由本次插入
+            if (blob.getRefCount() == 1)
+            {
+                write(temp, blob.getUrl());
+                // 外层事务回滚时记录不存在，删除刚写入的物理文件
+                String url = blob.getUrl();
+                afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK, () -> deletePhysical(hash, url));
+            }
+            else
+            {
+                // 物理文件丢失时用本次上传的内容补回
+                if (!exists(blob.getUrl()))
+                {
+                    log.warn("内容文件丢失，重新写入: {}", blob.getUrl());
+                    write(temp, blob.getUrl());
+                }
+                log.info("内容已存在，仅增加引用: {}", hash);
+            }
+            return blob;
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void release(String hash)
+    {
+        DiskBlob blob = diskBlobMapper.selectDiskBlobByHashForUpdate(hash);
+        if (blob == null)
+        {
+            return;
+        }
+        diskBlobMapper.decrementRefCount(hash);
+        if (diskBlobMapper.deleteUnreferencedDiskBlob(hash) > 0)
+        {
+            // 外层事务提交后再删除物理文件，避免回滚后记录仍在而文件已被删除
+            afterCompletion(TransactionSynchronization.STATUS_COMMITTED, () -> deletePhysical(hash, blob.getUrl()));
+        }
+    }
+
+    /**
+     * 删除物理文件，在独立事务中锁定该哈希后确认没有记录再删除；
+     * 记录不存在时锁住的是唯一索引上的间隙，并发上传同一内容的插入会等待删除完成，
+     * 已插入但未提交的上传则使这里等待其结束，因此不会删掉其他上传刚写入的文件
+     */
+    private void deletePhysical(String hash, String url)
+    {
+        try
+        {
+            requiresNew.executeWithoutResult(status -> {
+                if (diskBlobMapper.selectDiskBlobByHashForUpdate(hash) != null)
+                {
+                    return;
+                }
+                FileUtils.deleteFile(localPath(url));
+                log.info("内容引用为0，删除物理文件: {}", url);
+            });
+        }
+        catch (Exception e)
+        {
+            log.warn("删除内容文件失败: {}", url, e);
+        }
+    }
+
+    /**
+     * 将临时文件写入内容地址
+     */
+    private void write(Path temp, String url) throws IOException
+    {
+        String relative = url.substring(Constants.RESOURCE_PREFIX.length());
+        if (HdfsUtils.isHdfsEnabled())
+        {
+            try (InputStream in = Files.newInputStream(temp);
+                 FSDataOutputStream out = HdfsUtils.create(HdfsUtils.buildHdfsPath(relative)))
+            {
+                IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+            }
+        }
+        else
+        {
+            Path target = Paths.get(localPath(url));
+            Files.createDirectories(target.getParent());
+            Files.copy(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private boolean exists(String url) throws IOException
+    {
+        String relative = url.substring(Constants.RESOURCE_PREFIX.length());
+        if (HdfsUtils.isHdfsEnabled())
+        {
+            return HdfsUtils.exists(HdfsUtils.buildHdfsPath(relative));
+        }
+        return Files.exists(Paths.get(localPath(url)));
+    }
+
+    private static String localPath(String url)
+    {
+        return RuoYiConfig.getProfile() + url.substring(Constants.RESOURCE_PREFIX.length());
+    }
+
+    /**
+     * 内容文件的相对路径，保留首次上传的扩展名，便于按扩展名识别类型进行预览
+     */
+    private static String relativePath(String hash, String extension)
+    {
+        String path = BLOB_DIR + "/" + hash.substring(0, 2) + "/" + hash;
+        return StringUtils.isEmpty(extension) ? path : path + "." + extension.toLowerCase();
+    }
+
+    /**
+     * 在当前事务结束且状态匹配时执行，没有事务时立即执行提交后的操作
+     */
+    private static void afterCompletion(int expectedStatus, Runnable action)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            if (expectedStatus == TransactionSynchronization.STATUS_COMMITTED)
+            {
+                action.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCompletion(int status)
+            {
+                if (status == expectedStatus)
+                {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private static MessageDigest md5()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.gzu.disk.service.impl;
+
+import com.gzu.common.config.RuoYiConfig;
+import com.gzu.common.constant.Constants;
+import com.gzu.common.utils.StringUtils;
+import com.gzu.common.utils.file.FileUtils;
+import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.disk.domain.DiskFile;
+import com.gzu.disk.service.IDiskDownloadService;
+import com.gzu.disk.service.IDiskFileService;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 文件打包下载Service业务层处理
+ * 逐个从本地或HDFS读取文件直接写入zip输出流；HDFS上的小文件由线程池并行预读，预读内存受配额限制
+ */
+@Service
+public class DiskDownloadServiceImpl implements IDiskDownloadService
+{
+    private static final Logger log = LoggerFactory.getLogger(DiskDownloadServiceImpl.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 本身已压缩的格式，再次压缩几乎没有收益，只打包不压缩 */
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "zip", "rar", "7z", "gz", "tgz", "bz2", "xz", "jar", "apk",
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp4", "mkv", "avi", "mov", "wmv", "flv", "webm",
+            "mp3", "aac", "flac", "ogg", "m4a",
+            "docx", "xlsx", "pptx", "pdf"));
+
+    @Autowired
+    private IDiskFileService diskFileService;
+
+    @Autowired
+    private ThreadPoolTaskExecutor threadPoolTaskExecutor;
+
+    /** HDFS打包时预读的文件数，0表示不预读 */
+    @Value("${disk.download.prefetchCount:4}")
+    private int prefetchCount;
+
+    /** 单个打包请求预读占用的最大内存 */
+    @Value("${disk.download.prefetchRequestBytes:67108864}")
+    private long prefetchRequestBytes;
+
+    /** 超过该大小的文件不预读，轮到时直接流式读取 */
+    @Value("${disk.download.prefetchEntryBytes:16777216}")
+    private long prefetchEntryBytes;
+
+    /** 所有打包请求预读占用的内存总上限 */
+    @Value("${disk.download.prefetchTotalBytes:268435456}")
+    private long prefetchTotalBytes;
+
+    /** 全局预读内存配额，单位KB */
+    private Semaphore prefetchPermits;
+
+    @PostConstruct
+    public void init()
+    {
+        prefetchPermits = new Semaphore((int) Math.min(Integer.MAX_VALUE, prefetchTotalBytes / 1024));
+    }
+
+    @Override
+    public void writeZip(List<DiskFile> diskFiles, OutputStream os) throws IOException
+    {
+        List<ZipItem> items = collect(diskFiles);
+        ZipOutputStream zos = new ZipOutputStream(os);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Prefetcher prefetcher = HdfsUtils.isHdfsEnabled() && prefetchCount > 0 ? new Prefetcher(items) : null;
+        try
+        {
+            for (int i = 0; i < items.size(); i++)
+            {
+                ZipItem item = items.get(i);
+                if (isDir(item.file))
+                {
+                    zos.putNextEntry(new ZipEntry(item.name + "/"));
+                    zos.closeEntry();
+                    continue;
+                }
+                if (prefetcher != null)
+                {
+                    prefetcher.fill(i);
+                }
+                // 单个文件读取失败不影响其他文件（已写出的部分无法撤回），写出失败（如客户端断开）时直接结束
+                InputStream in;
+                try
+                {
+                    in = prefetcher != null ? prefetcher.take(i) : open(item.file);
+                }
+                catch (IOException e)
+                {
+                    log.error("打包文件失败: {}", item.name, e);
+                    continue;
+                }
+                try (InputStream input = in)
+                {
+                    zos.setLevel(isCompressed(item.name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    zos.putNextEntry(new ZipEntry(item.name));
+                    copyEntry(input, zos, buffer);
+                    zos.closeEntry();
+                }
+                catch (EntryReadException e)
+                {
+                    log.error("打包文件失败: {}", item.name, e.getCause());
+                }
+            }
+            zos.finish();
+            zos.flush();
+        }
+        finally
+        {
+            if (prefetcher != null)
+            {
+                prefetcher.close();
+            }
+        }
+    }
+
+    /**
+     * HDFS预读：在写出当前文件的同时，由线程池并行打开并读取后续若干个文件到内存
+     * 预读受单请求和全局两级内存配额限制，配额不足或文件过大时该文件退化为轮到时直接读取
+     */
+    private class Prefetcher
+    {
+        private final List<ZipItem> items;
+
+        private final Map<Integer, CompletableFuture<Prefetched>> pending = new HashMap<>();
+
+        /** 下一个待提交预读的条目下标 */
+        private int next;
+
+        /** 本请求已预占的内存 */
+        private long reservedBytes;
+
+        Prefetcher(List<ZipItem> items)
+        {
+            this.items = items;
+        }
+
+        /**
+         * 提交 current 之后窗口内的预读任务
+         */
+        void fill(int current)
+        {
+            next = Math.max(next, current);
+            while (next < items.size() && next < current + prefetchCount)
+            {
+                ZipItem item = items.get(next);
+                long size = sizeOf(item);
+                if (!isDir(item.file) && size > 0 && size <= prefetchEntryBytes)
+                {
+                    if (reservedBytes + size > prefetchRequestBytes)
+                    {
+                        // 本请求配额已满，等当前文件写完释放后再继续
+                        return;
+                    }
+                    int permits = (int) ((size + 1023) / 1024);
+                    if (prefetchPermits.tryAcquire(permits))
+                    {
+                        CompletableFuture<Prefetched> future;
+                        try
+                        {
+                            future = CompletableFuture.supplyAsync(() -> read(item.file, size, permits), threadPoolTaskExecutor);
+                        }
+                        catch (RuntimeException e)
+                        {
+                            // 线程池拒绝任务时归还配额，下次推进窗口时再提交，届时仍未预读的文件直接读取
+                            prefetchPermits.release(permits);
+                            log.warn("预读任务提交失败，改为直接读取: {}", item.name, e);
+                            return;
+                        }
+                        reservedBytes += size;
+                        pending.put(next, future);
+                    }
+                }
+                next++;
+            }
+        }
+
+        /**
+         * 取出第 index 个文件的内容，已预读的从内存返回，否则直接打开
+         */
+        InputStream take(int index) throws IOException
+        {
+            CompletableFuture<Prefetched> future = pending.remove(index);
+            if (future == null)
+            {
+                return open(items.get(index).file);
+            }
+            Prefetched prefetched;
+            try
+            {
+                prefetched = future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                future.thenAccept(Prefetched::release);
+                throw new InterruptedIOException("打包下载被中断");
+            }
+            catch (ExecutionException e)
+            {
+                // 预读失败（全局配额已在任务中归还）时改为直接读取
+                reservedBytes -= sizeOf(items.get(index));
+                log.warn("预读文件失败，改为直接读取: {}", items.get(index).name, e.getCause());
+                return open(items.get(index).file);
+            }
+            reservedBytes -= prefetched.size;
+            // 写完该条目关闭流时才归还全局配额
+            return new ByteArrayInputStream(prefetched.data)
+            {
+                @Override
+                public void close()
+                {
+                    prefetched.release();
+                }
+            };
+        }
+
+        /**
+         * 请求结束时归还尚未消费的预读内存，仍在读取的任务完成后自行归还
+         */
+        void close()
+        {
+            pending.values().forEach(future -> future.whenComplete((prefetched, e) -> {
+                if (prefetched != null)
+                {
+                    prefetched.release();
+                }
+            }));
+            pending.clear();
+        }
+    }
+
+    /**
+     * 在线程池中读取整个文件，读取失败时归还全局配额
+     */
+    private Prefetched read(DiskFile diskFile, long size, int permits)
+    {
+        try (InputStream in = open(diskFile))
+        {
+            byte[] data = new byte[(int) size];
+            int n = IOUtils.read(in, data);
+            if (n != size || in.read() != -1)
+            {
+                throw new IOException("文件大小与记录不一致: " + diskFile.getName());
+            }
+            return new Prefetched(data, size, permits);
+        }
+        catch (IOException e)
+        {
+            prefetchPermits.release(permits);
+            throw new UncheckedIOException(e);
+        }
+        catch (RuntimeException | Error e)
+        {
+            // 结果没有交给调用方时都要归还预读额度，否则额度会被永久占用
+            prefetchPermits.release(permits);
+            throw e;
+        }
+    }
+
+    /**
+     * 复制一个条目的内容，读取端的异常包装为 EntryReadException 以便与写出失败区分
+     */
+    private static void copyEntry(InputStream in, OutputStream out, byte[] buffer) throws IOException
+    {
+        while (true)
+        {
+            int n;
+            try
+            {
+                n = in.read(buffer);
+            }
+            catch (IOException e)
+            {
+                throw new EntryReadException(e);
+            }
+            if (n == -1)
+            {
+                return;
+            }
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private static long sizeOf(ZipItem item)
+    {
+        return item.file.getSize() == null ? 0 : item.file.getSize();
+    }
+
+    private static boolean isDir(DiskFile diskFile)
+    {
+        return diskFile.getIsDir() != null && diskFile.getIsDir() == 1;
+    }
+
+    private static class EntryReadException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        EntryReadException(IOException cause)
+        {
+            super(cause);
+        }
+    }
+
+    /**
+     * 预读完成的文件内容，归还全局配额只执行一次
+     */
+    private class Prefetched
+    {
+        private final byte[] data;
+
+        private final long size;
+
+        private final int permits;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Prefetched(byte[] data, long size, int permits)
+        {
+            this.data = data;
+            this.size = size;
+            this.permits = permits;
+        }
+
+        void release()
+        {
+            if (released.compareAndSet(false, true))
+            {
+                prefetchPermits.release(permits);
+            }
+        }
+    }
+
+    /**
+     * 按层级展开选中的文件夹，每一层只查询两次数据库，返回带zip内路径的条目
+     */
+    private List<ZipItem> collect(List<DiskFile> diskFiles)
+    {
+        List<ZipItem> items = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        Map<Long, String> dirPaths = new HashMap<>();
+        for (DiskFile diskFile : diskFiles)
+        {
+            String name = uniqueName(usedNames, diskFile.getName());
+            items.add(new ZipItem(name, diskFile));
+            if (isDir(diskFile))
+            {
+                dirPaths.put(diskFile.getId(), name);
+            }
+        }
+
+        while (!dirPaths.isEmpty())
+        {
+            List<Long> childIds = diskFileService.selectDiskFileByParentIds(dirPaths.keySet().toArray(new Long[0]));
+            if (childIds.isEmpty())
+            {
+                break;
+            }
+            Map<Long, String> nextLevel = new HashMap<>();
+            for (DiskFile child : diskFileService.selectDiskFileListByIds(childIds.toArray(new Long[0])))
+            {
+                String parentPath = dirPaths.get(child.getParentId());
+                if (parentPath == null)
+                {
+                    continue;
+                }
+                String name = uniqueName(usedNames, parentPath + "/" + child.getName());
+                items.add(new ZipItem(name, child));
+                if (isDir(child))
+                {
+                    nextLevel.put(child.getId(), name);
+                }
+            }
+            dirPaths = nextLevel;
+        }
+        return items;
+    }
+
+    /**
+     * 打开文件内容，HDFS启用且文件存在时读取HDFS，否则读取本地文件（与 FileUtils.writeBytes 一致）
+     */
+    static InputStream open(DiskFile diskFile) throws IOException
+    {
+        String filePath = RuoYiConfig.getProfile() + StringUtils.substringAfter(diskFile.getUrl(), Constants.RESOURCE_PREFIX);
+        if (HdfsUtils.isHdfsEnabled())
+        {
+            String hdfsPath = FileUtils.convertToHdfsPath(filePath);
+            if (HdfsUtils.exists(hdfsPath))
+            {
+                return HdfsUtils.open(hdfsPath);
+            }
+        }
+        return Files.newInputStream(Paths.get(filePath));
+    }
+
+    private static boolean isCompressed(String name)
+    {
+        return COMPRESSED_EXTENSIONS.contains(StringUtils.substringAfterLast(name, ".").toLowerCase());
+    }
+
+    /**
+     * 同一路径下出现重名时追加序号，例如 a.txt、a (1).txt
+     */
+    private static String uniqueName(Set<String> usedNames, String name)
+    {
+        if (usedNames.add(name))
+        {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        int slash = name.lastIndexOf('/');
+        String base = dot > slash + 1 ? name.substring(0, dot) : name;
+        String ext = dot > slash + 1 ? name.substring(dot) : "";
+        for (int i = 1; ; i++)
+        {
+            String candidate = base + " (" + i + ")" + ext;
+            if (usedNames.add(candidate))
+            {
+                return candidate;
+            }
+        }
+    }
+
+    private static class ZipItem
+    {
+        private final String name;
+
+        private final DiskFile file;
+
+        ZipItem(String name, DiskFile file)
+        {
+            this.name = name;
+            this.file = file;
+        }
+    }
+}
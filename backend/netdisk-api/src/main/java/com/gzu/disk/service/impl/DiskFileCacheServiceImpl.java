@@ -0,0 +1,343 @@
+package com.gzu.disk.service.impl;
+
+import com.gzu.common.utils.bean.BeanUtils;
+import com.gzu.common.utils.uuid.IdUtils;
+import com.gzu.disk.domain.DiskFile;
+import com.gzu.disk.mapper.DiskFileMapper;
+import com.gzu.disk.service.IDiskFileCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件元数据缓存Service业务层处理
+ * 缓存项记录加载时所属用户的版本号，用户的文件发生任何变更都会使版本号加一，旧版本的缓存项不再命中；
+ * 目录汇总、子树URL等批量更新会影响同一用户的多行数据，按用户失效比逐条定位更不容易遗漏。
+ * 事务内读取的数据可能未提交，不放入缓存；失效在变更时和事务提交后各执行一次，提交后再通知其他节点
+ */
+@Service
+public class DiskFileCacheServiceImpl implements IDiskFileCacheService
+{
+    private static final Logger log = LoggerFactory.getLogger(DiskFileCacheServiceImpl.class);
+
+    /** 失效消息中表示全部用户 */
+    private static final String ALL_USERS = "*";
+
+    @Autowired
+    private DiskFileMapper diskFileMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /** 是否启用缓存，关闭后直接查询数据库 */
+    @Value("${disk.cache.enabled:true}")
+    private boolean enabled;
+
+    /** 按ID缓存的最大文件数 */
+    @Value("${disk.cache.maxFiles:10000}")
+    private int maxFiles;
+
+    /** 缓存子文件列表的最大目录数 */
+    @Value("${disk.cache.maxChildren:2000}")
+    private int maxChildren;
+
+    /** 节点间失效通知的Redis频道 */
+    @Value("${disk.cache.channel:disk:file:evict}")
+    private String channel;
+
+    /** 本节点标识，收到自己发出的失效消息时忽略 */
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    /** 以下字段在持有该对象锁时访问 */
+    private final Object lock = new Object();
+
+    private Map<Long, Entry<DiskFile>> files;
+
+    private Map<String, Entry<List<DiskFile>>> children;
+
+    /** 用户版本号，没有记录时为0 */
+    private final Map<Long, Long> generations = new HashMap<>();
+
+    /** 失效次数，加载期间发生失效时丢弃加载结果 */
+    private long modCount;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder remoteEvictions = new LongAdder();
+
+    @PostConstruct
+    public void init()
+    {
+        int fileCapacity = Math.max(16, maxFiles);
+        int childrenCapacity = Math.max(16, maxChildren);
+        files = new LinkedHashMap<Long, Entry<DiskFile>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<DiskFile>> eldest)
+            {
+                return size() > fileCapacity;
+            }
+        };
+        children = new LinkedHashMap<String, Entry<List<DiskFile>>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<List<DiskFile>>> eldest)
+            {
+                return size() > childrenCapacity;
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+    }
+
+    @Override
+    public DiskFile selectById(Long id)
+    {
+        if (!enabled || id == null)
+        {
+            return diskFileMapper.selectDiskFileById(id);
+        }
+        long version;
+        synchronized (lock)
+        {
+            Entry<DiskFile> entry = files.get(id);
+            if (entry != null && entry.generation == generation(entry.value.getCreateId()))
+            {
+                hits.increment();
+                return copy(entry.value);
+            }
+            if (entry != null)
+            {
+                files.remove(id);
+            }
+            version = modCount;
+        }
+        misses.increment();
+        DiskFile file = diskFileMapper.selectDiskFileById(id);
+        if (file != null && !TransactionSynchronizationManager.isActualTransactionActive())
+        {
+            DiskFile cached = copy(file);
+            synchronized (lock)
+            {
+                if (version == modCount)
+                {
+                    files.put(id, new Entry<>(cached, generation(cached.getCreateId())));
+                }
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public List<DiskFile> selectChildren(Long userId, Long parentId)
+    {
+        DiskFile query = new DiskFile();
+        query.setCreateId(userId);
+        query.setParentId(parentId);
+        if (!enabled || userId == null || parentId == null)
+        {
+            return diskFileMapper.selectDiskFileList(query);
+        }
+        String key = userId + ":" + parentId;
+        long version;
+        synchronized (lock)
+        {
+            Entry<List<DiskFile>> entry = children.get(key);
+            if (entry != null && entry.generation == generation(userId))
+            {
+                hits.increment();
+                return copy(entry.value);
+            }
+            if (entry != null)
+            {
+                children.remove(key);
+            }
+            version = modCount;
+        }
+        misses.increment();
+        List<DiskFile> list = diskFileMapper.selectDiskFileList(query);
+        if (!TransactionSynchronizationManager.isActualTransactionActive())
+        {
+            List<DiskFile> cached = copy(list);
+            synchronized (lock)
+            {
+                if (version == modCount)
+                {
+                    children.put(key, new Entry<>(cached, generation(userId)));
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void evictUser(Long userId)
+    {
+        evictLocal(userId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            publish(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                // 提交前其他线程可能又加载了旧数据
+                evictLocal(userId);
+                publish(userId);
+            }
+        });
+    }
+
+    @Override
+    public void evictFiles(List<DiskFile> changed)
+    {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (DiskFile file : changed)
+        {
+            if (file.getCreateId() == null)
+            {
+                evictUser(null);
+                return;
+            }
+            userIds.add(file.getCreateId());
+        }
+        userIds.forEach(this::evictUser);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics()
+    {
+        Map<String, Object> metrics = new HashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        metrics.put("enabled", enabled);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount));
+        metrics.put("evictions", evictions.sum());
+        metrics.put("remoteEvictions", remoteEvictions.sum());
+        synchronized (lock)
+        {
+            metrics.put("files", files.size());
+            metrics.put("children", children.size());
+        }
+        return metrics;
+    }
+
+    private void evictLocal(Long userId)
+    {
+        synchronized (lock)
+        {
+            modCount++;
+            evictions.increment();
+            if (userId == null)
+            {
+                files.clear();
+                children.clear();
+                generations.clear();
+            }
+            else
+            {
+                generations.merge(userId, 1L, Long::sum);
+            }
+        }
+    }
+
+    private void publish(Long userId)
+    {
+        try
+        {
+            stringRedisTemplate.convertAndSend(channel, nodeId + ":" + (userId == null ? ALL_USERS : userId));
+        }
+        catch (Exception e)
+        {
+            log.warn("发送文件缓存失效通知失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点的失效通知，格式为 节点标识:用户ID
+     */
+    private void onMessage(String body)
+    {
+        int colon = body.indexOf(':');
+        if (colon < 0 || nodeId.equals(body.substring(0, colon)))
+        {
+            return;
+        }
+        String user = body.substring(colon + 1);
+        try
+        {
+            remoteEvictions.increment();
+            evictLocal(ALL_USERS.equals(user) ? null : Long.valueOf(user));
+        }
+        catch (NumberFormatException e)
+        {
+            log.warn("无效的文件缓存失效通知: {}", body);
+        }
+    }
+
+    private long generation(Long userId)
+    {
+        return generations.getOrDefault(userId, 0L);
+    }
+
+    private static DiskFile copy(DiskFile file)
+    {
+        DiskFile copy = new DiskFile();
+        BeanUtils.copyBeanProp(copy, file);
+        return copy;
+    }
+
+    private static List<DiskFile> copy(List<DiskFile> list)
+    {
+        List<DiskFile> copies = new ArrayList<>(list.size());
+        for (DiskFile file : list)
+        {
+            copies.add(copy(file));
+        }
+        return copies;
+    }
+
+    private static class Entry<T>
+    {
+        private final T value;
+
+        private final long generation;
+
+        Entry(T value, long generation)
+        {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.gzu.disk.service.impl;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
@@ -15,9 +20,15 @@ import com.gzu.common.utils.file.FileUploadUtils;
 import com.gzu.common.utils.file.FileUtils;
 import com.gzu.common.utils.file.MimeTypeUtils;
 import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.disk.domain.DiskBlob;
 import com.gzu.disk.domain.DiskStorage;
+import com.gzu.disk.domain.vo.FileCursorVO;
+import com.gzu.disk.service.IDiskBlobService;
+import com.gzu.disk.service.IDiskFileCacheService;
+import com.gzu.disk.service.IDiskQuotaService;
 import com.gzu.disk.service.IDiskSensitiveWordService;
 import com.gzu.disk.service.IDiskStorageService;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,7 +36,11 @@ import org.springframework.stereotype.Service;
 import com.gzu.disk.mapper.DiskFileMapper;
 import com.gzu.disk.domain.DiskFile;
 import com.gzu.disk.service.IDiskFileService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * 文件Service业务层处理
@@ -39,6 +54,9 @@ public class DiskFileServiceImpl implements IDiskFileService
 {
     private static final Logger log = LoggerFactory.getLogger(DiskRecoveryFileServiceImpl.class);
 
+    /** 游标分页每页最大条数 */
+    private static final int MAX_CURSOR_PAGE_SIZE = 500;
+
     @Autowired
     private DiskFileMapper diskFileMapper;
 
@@ -48,6 +66,28 @@ public class DiskFileServiceImpl implements IDiskFileService
     @Autowired
     private IDiskSensitiveWordService diskSensitiveWordService;
 
+    @Autowired
+    private IDiskBlobService diskBlobService;
+
+    @Autowired
+    private IDiskFileCacheService diskFileCacheService;
+
+    @Autowired
+    private IDiskQuotaService diskQuotaService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** 目录汇总修复时每个用户使用独立的事务 */
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init()
+    {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
     /**
      * 查询文件
      * 
@@ -57,7 +97,13 @@ public class DiskFileServiceImpl implements IDiskFileService
     @Override
     public DiskFile selectDiskFileById(Long id)
     {
-        return diskFileMapper.selectDiskFileById(id);
+        return diskFileCacheService.selectById(id);
+    }
+
+    @Override
+    public List<DiskFile> selectChildren(Long userId, Long parentId)
+    {
+        return diskFileCacheService.selectChildren(userId, parentId);
     }
 
     /**
@@ -72,6 +118,47 @@ public class DiskFileServiceImpl implements IDiskFileService
         return diskFileMapper.selectDiskFileList(diskFile);
     }
 
+    /**
+     * 查询列表页文件，目录大小直接取持久化的子树汇总，列表只需一次查询
+     *
+     * @param diskFile 文件
+     * @return 文件
+     */
+    @Override
+    public List<DiskFile> selectDiskFileListing(DiskFile diskFile)
+    {
+        return diskFileMapper.selectDiskFileListing(diskFile);
+    }
+
+    @Override
+    public FileCursorVO selectDiskFileCursor(DiskFile diskFile, Long lastId, String sortKey, int pageSize)
+    {
+        String key = StringUtils.isEmpty(sortKey) ? "id" : sortKey;
+        if (!"id".equals(key) && !"name".equals(key)) {
+            throw new ServiceException("不支持的排序字段: " + sortKey);
+        }
+        int size = Math.max(1, Math.min(pageSize, MAX_CURSOR_PAGE_SIZE));
+        DiskFile last = null;
+        if (lastId != null) {
+            // 上一页最后一条记录可能已被删除，仍按它的排序值继续
+            List<DiskFile> lasts = diskFileMapper.selectDiskFileListByIdsIgnoreDel(new Long[] { lastId });
+            if (lasts.isEmpty()) {
+                throw new ServiceException("分页游标无效");
+            }
+            last = lasts.get(0);
+        }
+        // 多查一条判断是否还有下一页
+        List<DiskFile> rows = diskFileMapper.selectDiskFilePageAfter(diskFile, last, key, size + 1);
+        FileCursorVO page = new FileCursorVO();
+        page.setHasMore(rows.size() > size);
+        if (page.isHasMore()) {
+            rows = rows.subList(0, size);
+        }
+        page.setRows(rows);
+        page.setNextCursor(page.isHasMore() ? rows.get(rows.size() - 1).getId() : null);
+        return page;
+    }
+
     /**
      * 新增文件
      * 
@@ -113,7 +200,13 @@ public class DiskFileServiceImpl implements IDiskFileService
             log.warn("回收站中存在同名文件: {}", diskFile.getName());
         }
         
-        return diskFileMapper.insertDiskFile(diskFile);
+        int rows = diskFileMapper.insertDiskFile(diskFile);
+        diskFileMapper.updatePathById(diskFile.getId());
+        if ("0".equals(diskFile.getDelFlag()) && diskFile.getParentId() != null && diskFile.getParentId() != 0) {
+            diskFileMapper.updateAncestorSubtree(diskFile.getParentId(), nvl(diskFile.getSize()), 1);
+        }
+        diskFileCacheService.evictFiles(Collections.singletonList(diskFile));
+        return rows;
     }
 
     private void validEntityBeforeSave(DiskFile diskFile) {
@@ -134,8 +227,8 @@ public class DiskFileServiceImpl implements IDiskFileService
         diskFile.setUpdateTime(DateUtils.getNowDate());
         validEntityBeforeSave(diskFile);
         
+        DiskFile old = diskFile.getId() != null ? diskFileMapper.selectDiskFileById(diskFile.getId()) : null;
         if (diskFile.getId() != null && StringUtils.isNotEmpty(diskFile.getName())) {
-            DiskFile old = diskFileMapper.selectDiskFileById(diskFile.getId());
             if (old != null && StringUtils.isNotEmpty(old.getUrl())
                     && !diskFile.getName().equals(old.getName())) {
                 
@@ -171,38 +264,7 @@ public class DiskFileServiceImpl implements IDiskFileService
                             log.info("新文件夹路径: {}", newFolderPath);
                             
                             // 2. 重命名物理文件夹
-                            if (HdfsUtils.isHdfsEnabled()) {
-                                String src = HdfsUtils.buildHdfsPath(oldFolderPath);
-                                String dst = HdfsUtils.buildHdfsPath(newFolderPath);
-                                log.info("HDFS重命名: {} -> {}", src, dst);
-                                boolean ok = HdfsUtils.rename(src, dst);
-                                if (!ok) {
-                                    throw new ServiceException("重命名HDFS文件夹失败");
-                                }
-                            } else {
-                                String localBase = RuoYiConfig.getProfile();
-                                // 直接拼接，因为 relative 已经包含开头的 /
-                                String oldAbs = localBase + oldFolderPath;
-                                String newAbs = localBase + newFolderPath;
-                                log.info("本地重命名: {} -> {}", oldAbs, newAbs);
-                                
-                                java.io.File oldFolder = new java.io.File(oldAbs);
-                                java.io.File newFolder = new java.io.File(newAbs);
-                                
-                                if (!oldFolder.exists()) {
-                                    log.warn("文件夹不存在，可能已被删除: {}", oldAbs);
-                                } else {
-                                    // 确保父目录存在
-                                    if (newFolder.getParentFile() != null && !newFolder.getParentFile().exists()) {
-                                        newFolder.getParentFile().mkdirs();
-                                    }
-                                    boolean ok = oldFolder.renameTo(newFolder);
-                                    if (!ok) {
-                                        throw new ServiceException("重命名本地文件夹失败: " + oldAbs + " -> " + newAbs);
-                                    }
-                                    log.info("✓ 物理文件夹重命名成功");
-                                }
-                            }
+                            movePhysical(oldFolderPath, newFolderPath);
                             
                             // 3. 更新文件夹本身的URL
                             // URL格式: /profile/upload/admin/文件夹名
@@ -210,42 +272,8 @@ public class DiskFileServiceImpl implements IDiskFileService
                             diskFile.setUrl(newUrl);
                             log.info("更新文件夹URL: {} -> {}", oldUrl, newUrl);
                             
-                            // 4. 获取所有子文件和子文件夹
-                            List<DiskFile> allFiles = this.selectAllByUserIdIgnoreDel(SecurityUtils.getUserId());
-                            List<DiskFile> allChildren = new ArrayList<>();
-                            this.getChildPerms(allFiles, allChildren, diskFile.getId());
-                            
-                            log.info("找到 {} 个子文件/文件夹需要更新路径", allChildren.size());
-                            
-                            // 5. 批量更新所有子项的URL（将旧路径前缀替换为新路径前缀）
-                            // 注意：需要精确匹配路径，避免误替换
-                            String oldUrlPrefix = oldUrl; // 例如: /profile/upload/admin/旧文件夹名
-                            String newUrlPrefix = newUrl; // 例如: /profile/upload/admin/新文件夹名
-                            
-                            int updatedCount = 0;
-                            for (DiskFile child : allChildren) {
-                                if (StringUtils.isNotEmpty(child.getUrl())) {
-                                    String oldChildUrl = child.getUrl();
-                                    // 精确匹配：子项的URL必须以旧URL开头，且下一个字符是/或者是URL结尾
-                                    if (oldChildUrl.startsWith(oldUrlPrefix)) {
-                                        // 检查是否是直接的子项（路径精确匹配）
-                                        String remaining = oldChildUrl.substring(oldUrlPrefix.length());
-                                        if (remaining.isEmpty() || remaining.startsWith("/")) {
-                                            String newChildUrl = newUrlPrefix + remaining;
-                                            
-                                            // 更新数据库
-                                            DiskFile updateChild = new DiskFile();
-                                            updateChild.setId(child.getId());
-                                            updateChild.setUrl(newChildUrl);
-                                            diskFileMapper.updateDiskFile(updateChild);
-                                            updatedCount++;
-                                            
-                                            log.debug("更新子项URL: {} -> {}", oldChildUrl, newChildUrl);
-                                        }
-                                    }
-                                }
-                            }
-                            
+                            // 4. 一条语句替换所有子项URL的旧路径前缀
+                            int updatedCount = diskFileMapper.updateSubtreeUrl(old.getPath(), SecurityUtils.getUserId(), oldUrl, newUrl);
                             log.info("✓ 已更新 {} 个子文件/文件夹的路径", updatedCount);
                             log.info("========== 文件夹重命名完成 ==========");
                             
@@ -262,36 +290,22 @@ public class DiskFileServiceImpl implements IDiskFileService
                         log.info("文件ID: {}", diskFile.getId());
                         log.info("旧名称: {} -> 新名称: {}", old.getName(), diskFile.getName());
                         
-                        if (relative.contains("/")) {
+                        if (StringUtils.isNotEmpty(old.getHash())) {
+                            // 去重存储的文件按内容寻址，物理文件可能被多条记录引用，只修改文件名
+                            String newName = diskFile.getName();
+                            String ext = newName.contains(".") ? newName.substring(newName.lastIndexOf('.') + 1) : "";
+                            if (StringUtils.isNotEmpty(ext)) {
+                                diskFile.setType(this.getType(ext));
+                            }
+                            log.info("========== 文件重命名完成 ==========");
+                        } else if (relative.contains("/")) {
                             // relative 格式: /upload/admin/文件名
                             String dirRel = relative.substring(0, relative.lastIndexOf('/'));
                             String newFileName = diskFile.getName();
                             String newRelative = dirRel + "/" + newFileName;
 
                             try {
-                                if (HdfsUtils.isHdfsEnabled()) {
-                                    String src = HdfsUtils.buildHdfsPath(relative);
-                                    String dst = HdfsUtils.buildHdfsPath(newRelative);
-                                    boolean ok = HdfsUtils.rename(src, dst);
-                                    if (!ok) {
-                                        throw new ServiceException("重命名HDFS文件失败");
-                                    }
-                                } else {
-                                    String localBase = RuoYiConfig.getProfile();
-                                    // 直接拼接，因为 relative 已经包含开头的 /
-                                    String oldAbs = localBase + relative;
-                                    String newAbs = localBase + newRelative;
-                                    java.io.File srcFile = new java.io.File(oldAbs);
-                                    java.io.File dstFile = new java.io.File(newAbs);
-                                    // 确保父目录存在
-                                    if (dstFile.getParentFile() != null && !dstFile.getParentFile().exists()) {
-                                        dstFile.getParentFile().mkdirs();
-                                    }
-                                    boolean ok = srcFile.renameTo(dstFile);
-                                    if (!ok) {
-                                        throw new ServiceException("重命名本地文件失败");
-                                    }
-                                }
+                                movePhysical(relative, newRelative);
                                 // 更新url为新的相对路径
                                 diskFile.setUrl(Constants.RESOURCE_PREFIX + newRelative);
 
@@ -328,7 +342,171 @@ public class DiskFileServiceImpl implements IDiskFileService
             log.warn("回收站中存在同名文件: {}", diskFile.getName());
         }
         
-        return diskFileMapper.updateDiskFile(diskFile);
+        int rows = diskFileMapper.updateDiskFile(diskFile);
+        if (old != null) {
+            updateAncestorsOnChange(old, diskFile);
+        }
+        diskFileCacheService.evictFiles(Collections.singletonList(old != null ? old : diskFile));
+        return rows;
+    }
+
+    /**
+     * 移动文件或文件夹到另一个文件夹
+     * 物理文件整体移动一次，子项的URL和物化路径各用一条语句按前缀替换
+     */
+    @Override
+    @Transactional
+    public int moveDiskFiles(Long[] ids, Long parentId)
+    {
+        Long userId = SecurityUtils.getUserId();
+        String targetUrl;
+        String targetPath;
+        if (parentId == null || parentId == 0) {
+            parentId = 0L;
+            DiskStorage diskStorage = diskStorageService.initDiskStorage(userId);
+            String[] localPaths = RuoYiConfig.getUploadPath().split("/");
+            targetUrl = Constants.RESOURCE_PREFIX + "/" + localPaths[localPaths.length - 1] + "/" + diskStorage.getBaseDir();
+            targetPath = "/";
+        } else {
+            List<DiskFile> targets = diskFileMapper.selectDiskFileListByIdsAndUserId(new Long[] { parentId }, userId);
+            if (targets.isEmpty() || targets.get(0).getIsDir() == null || targets.get(0).getIsDir() != 1) {
+                throw new ServiceException("目标文件夹不存在");
+            }
+            targetUrl = targets.get(0).getUrl();
+            targetPath = targets.get(0).getPath();
+        }
+        int moved = 0;
+        for (DiskFile file : diskFileMapper.selectDiskFileListByIdsAndUserId(ids, userId)) {
+            if (parentId.equals(file.getParentId())) {
+                continue;
+            }
+            if (StringUtils.isNotEmpty(file.getPath()) && StringUtils.isNotEmpty(targetPath)
+                    && targetPath.startsWith(file.getPath())) {
+                throw new ServiceException("不能将文件夹移动到自身或其子文件夹中");
+            }
+            if (diskFileMapper.verify(file.getName(), parentId, null, userId, "0") > 0) {
+                throw new ServiceException("目标文件夹中已存在同名文件: " + file.getName());
+            }
+            addToAncestors(file, -1);
+
+            DiskFile update = new DiskFile();
+            update.setId(file.getId());
+            update.setParentId(parentId);
+            update.setUpdateTime(DateUtils.getNowDate());
+            String oldUrl = file.getUrl();
+            // 去重存储的文件按内容寻址，物理位置与所在目录无关
+            if (StringUtils.isEmpty(file.getHash()) && StringUtils.isNotEmpty(oldUrl)) {
+                String newUrl = targetUrl + "/" + file.getName();
+                try {
+                    movePhysical(StringUtils.substringAfter(oldUrl, Constants.RESOURCE_PREFIX),
+                            StringUtils.substringAfter(newUrl, Constants.RESOURCE_PREFIX));
+                } catch (IOException e) {
+                    log.error("移动文件失败: {}", file.getName(), e);
+                    throw new ServiceException("移动文件失败: " + e.getMessage());
+                }
+                update.setUrl(newUrl);
+                if (file.getIsDir() != null && file.getIsDir() == 1) {
+                    diskFileMapper.updateSubtreeUrl(file.getPath(), userId, oldUrl, newUrl);
+                }
+            }
+            moved += diskFileMapper.updateDiskFile(update);
+            if (StringUtils.isNotEmpty(file.getPath()) && StringUtils.isNotEmpty(targetPath)) {
+                diskFileMapper.updateSubtreePath(file.getPath(), targetPath + file.getId() + "/");
+            }
+
+            file.setParentId(parentId);
+            addToAncestors(file, 1);
+        }
+        if (moved > 0) {
+            diskFileCacheService.evictUser(userId);
+        }
+        return moved;
+    }
+
+    /**
+     * 重命名或移动物理文件（夹），参数为资源前缀之后的相对路径
+     */
+    private void movePhysical(String oldRelative, String newRelative) throws IOException
+    {
+        if (HdfsUtils.isHdfsEnabled()) {
+            String src = HdfsUtils.buildHdfsPath(oldRelative);
+            String dst = HdfsUtils.buildHdfsPath(newRelative);
+            log.info("HDFS重命名: {} -> {}", src, dst);
+            HdfsUtils.mkdirs(dst.substring(0, dst.lastIndexOf('/')));
+            if (!HdfsUtils.rename(src, dst)) {
+                throw new ServiceException("重命名HDFS文件失败");
+            }
+            return;
+        }
+        // 直接拼接，因为相对路径已经包含开头的 /
+        java.io.File src = new java.io.File(RuoYiConfig.getProfile() + oldRelative);
+        java.io.File dst = new java.io.File(RuoYiConfig.getProfile() + newRelative);
+        log.info("本地重命名: {} -> {}", src, dst);
+        if (!src.exists()) {
+            log.warn("文件不存在，可能已被删除: {}", src);
+            return;
+        }
+        // 确保父目录存在
+        if (dst.getParentFile() != null && !dst.getParentFile().exists()) {
+            dst.getParentFile().mkdirs();
+        }
+        if (!src.renameTo(dst)) {
+            throw new ServiceException("重命名本地文件失败: " + src + " -> " + dst);
+        }
+    }
+
+    /**
+     * 文件移动、大小变化或通过修改删除标志移入回收站时，更新新旧祖先目录的汇总
+     */
+    private void updateAncestorsOnChange(DiskFile old, DiskFile diskFile)
+    {
+        boolean moved = diskFile.getParentId() != null && !diskFile.getParentId().equals(old.getParentId());
+        boolean resized = diskFile.getSize() != null && !diskFile.getSize().equals(old.getSize());
+        boolean removed = diskFile.getDelFlag() != null && !"0".equals(diskFile.getDelFlag());
+        if (!moved && !resized && !removed) {
+            return;
+        }
+        addToAncestors(old, -1);
+        if (!removed) {
+            if (moved) {
+                old.setParentId(diskFile.getParentId());
+            }
+            if (resized) {
+                old.setSize(diskFile.getSize());
+            }
+            addToAncestors(old, 1);
+        }
+    }
+
+    /**
+     * 将文件（目录时连同其汇总）计入或移出祖先目录的汇总
+     *
+     * @param file 文件，目录的汇总取自修改前读取的值
+     * @param sign 1计入，-1移出
+     */
+    private void addToAncestors(DiskFile file, int sign)
+    {
+        if (file.getParentId() == null || file.getParentId() == 0) {
+            return;
+        }
+        long size = nvl(file.getSize()) + nvl(file.getSubtreeSize());
+        long count = 1 + nvl(file.getSubtreeCount());
+        diskFileMapper.updateAncestorSubtree(file.getParentId(), sign * size, sign * count);
+    }
+
+    /**
+     * 状态同时变化的一批文件中，父目录不在这批文件中的子树根
+     * 子树内部的汇总保持不变，只需把子树根整体计入或移出祖先目录
+     */
+    private static List<DiskFile> subtreeRoots(List<DiskFile> files)
+    {
+        Set<Long> ids = files.stream().map(DiskFile::getId).collect(Collectors.toSet());
+        return files.stream().filter(f -> !ids.contains(f.getParentId())).collect(Collectors.toList());
+    }
+
+    private static long nvl(Long value)
+    {
+        return value == null ? 0L : value;
     }
 
     /**
@@ -340,7 +518,11 @@ public class DiskFileServiceImpl implements IDiskFileService
     @Override
     public int deleteDiskFileByIds(Long[] ids)
     {
-        return diskFileMapper.deleteDiskFileByIds(ids);
+        List<DiskFile> active = diskFileMapper.selectDiskFileListByIds(ids);
+        int rows = diskFileMapper.deleteDiskFileByIds(ids);
+        subtreeRoots(active).forEach(f -> addToAncestors(f, -1));
+        diskFileCacheService.evictFiles(active);
+        return rows;
     }
 
     /**
@@ -352,7 +534,13 @@ public class DiskFileServiceImpl implements IDiskFileService
     @Override
     public int deleteDiskFileById(Long id)
     {
-        return diskFileMapper.deleteDiskFileById(id);
+        DiskFile active = diskFileMapper.selectDiskFileById(id);
+        int rows = diskFileMapper.deleteDiskFileById(id);
+        if (active != null) {
+            addToAncestors(active, -1);
+            diskFileCacheService.evictFiles(Collections.singletonList(active));
+        }
+        return rows;
     }
 
     @Override
@@ -362,7 +550,11 @@ public class DiskFileServiceImpl implements IDiskFileService
 
     @Override
     public int removeDiskFileByIds(Long[] ids) {
-        return diskFileMapper.removeDiskFileByIds(ids);
+        List<DiskFile> active = diskFileMapper.selectDiskFileListByIds(ids);
+        int rows = diskFileMapper.removeDiskFileByIds(ids);
+        subtreeRoots(active).forEach(f -> addToAncestors(f, -1));
+        diskFileCacheService.evictFiles(active);
+        return rows;
     }
 
     @Override
@@ -395,11 +587,6 @@ public class DiskFileServiceImpl implements IDiskFileService
         return diskFileMapper.selectDiskFileListByIdsIgnoreDel(ids);
     }
 
-    @Override
-    public List<DiskFile> selectAll() {
-        return diskFileMapper.selectAll();
-    }
-
     @Override
     public List<DiskFile> selectAllByUserId(Long userId) {
         return diskFileMapper.selectAllByUserId(userId);
@@ -438,136 +625,106 @@ public class DiskFileServiceImpl implements IDiskFileService
         }
     }
 
-    /**
-     * 根据父节点的ID获取所有子节点
-     *
-     * @param list 分类表
-     * @param allList 汇总
-     * @param parentId 传入的父节点ID
-     * @return String
-     */
     @Override
-    public List<DiskFile> getChildPerms(List<DiskFile> list, List<DiskFile> allList, Long parentId)
-    {
-        List<DiskFile> returnList = new ArrayList<>();
-        for (Iterator<DiskFile> iterator = list.iterator(); iterator.hasNext();)
-        {
-            DiskFile t = iterator.next();
-            // 一、根据传入的某个父节点ID,遍历该父节点的所有子节点
-            if (t.getParentId().equals(parentId))
-            {
-                recursionFn(list,allList, t);
-                returnList.add(t);
-            }
-        }
-        return returnList;
+    public int refresh(Long[] ids) {
+        List<DiskFile> removed = diskFileMapper.selectDiskFileListByIdsIgnoreDel(ids).stream()
+                .filter(f -> !"0".equals(f.getDelFlag())).collect(Collectors.toList());
+        int rows = diskFileMapper.refresh(ids);
+        subtreeRoots(removed).forEach(f -> addToAncestors(f, 1));
+        diskFileCacheService.evictFiles(removed);
+        return rows;
     }
 
     @Override
-    public int refresh(Long[] ids) {
-        return diskFileMapper.refresh(ids);
+    public List<DiskFile> selectSubtreeByIds(Long[] ids, boolean includeDeleted) {
+        List<DiskFile> roots = includeDeleted ? diskFileMapper.selectDiskFileListByIdsIgnoreDel(ids)
+                : diskFileMapper.selectDiskFileListByIds(ids);
+        List<String> paths = topPaths(roots);
+        List<DiskFile> files = paths.isEmpty() ? new ArrayList<>()
+                : diskFileMapper.selectDiskFileListByPaths(paths, includeDeleted ? null : "0");
+        // 尚未生成路径的旧数据只返回自身
+        roots.stream().filter(f -> StringUtils.isEmpty(f.getPath())).forEach(files::add);
+        return files;
     }
 
     @Override
     @Transactional
-    public int save(DiskFile diskFile, DiskStorage diskStorage) {
-        int i = this.insertDiskFile(diskFile);
-        if (i==0) throw new ServiceException("上传失败");
-        //更新已经用的容量
-        i = diskStorageService.updateUsedCapacity(diskStorage.getId(), diskStorage.getUsedCapacity() + diskFile.getSize());
-        if (i==0) throw new ServiceException("上传失败");
-        return i;
-    }
-
-    /**
-     * 根据父节点的ID获取所有子节点
-     *
-     * @param list 分类表
-     * @param parentId 传入的父节点ID
-     * @return String
-     */
-    public List<DiskFile> getChildPerms(List<DiskFile> list, int parentId)
-    {
-        List<DiskFile> returnList = new ArrayList<>();
-        for (Iterator<DiskFile> iterator = list.iterator(); iterator.hasNext();)
-        {
-            DiskFile t = iterator.next();
-            // 一、根据传入的某个父节点ID,遍历该父节点的所有子节点
-            if (t.getParentId() == parentId)
-            {
-                recursionFn(list, t);
-                returnList.add(t);
-            }
+    public int removeDiskFileTreeByIds(Long[] ids) {
+        List<DiskFile> active = diskFileMapper.selectDiskFileListByIds(ids);
+        List<String> paths = topPaths(active);
+        int rows = paths.isEmpty() ? 0 : diskFileMapper.removeDiskFileByPaths(paths);
+        Long[] unpathed = active.stream().filter(f -> StringUtils.isEmpty(f.getPath())).map(DiskFile::getId).toArray(Long[]::new);
+        if (unpathed.length > 0) {
+            rows += diskFileMapper.removeDiskFileByIds(unpathed);
         }
-        return returnList;
+        // 子树内部的汇总保持不变，只从祖先目录中减去最上层的子树根
+        Set<String> topPaths = new HashSet<>(paths);
+        active.stream().filter(f -> StringUtils.isEmpty(f.getPath()) || topPaths.contains(f.getPath()))
+                .forEach(f -> addToAncestors(f, -1));
+        diskFileCacheService.evictFiles(active);
+        return rows;
     }
 
-    /**
-     * 递归列表
-     *
-     * @param list 分类表
-     * @param t 子节点
-     */
-    private void recursionFn(List<DiskFile> list,List<DiskFile> allList, DiskFile t)
-    {
-        // 得到子节点列表
-        List<DiskFile> childList = getChildList(list, t);
-        t.setChildren(childList);
-        allList.addAll(childList);
-        allList.add(t);
-        for (DiskFile tChild : childList)
-        {
-            if (hasChild(list, tChild))
-            {
-                recursionFn(list, tChild);
-            }
+    @Override
+    @Transactional
+    public int refreshTree(Long[] ids) {
+        List<DiskFile> roots = diskFileMapper.selectDiskFileListByIdsIgnoreDel(ids);
+        List<String> paths = topPaths(roots);
+        if (paths.isEmpty()) {
+            return this.refresh(ids);
         }
+        List<DiskFile> removed = diskFileMapper.selectDiskFileListByPaths(paths, "2");
+        int rows = diskFileMapper.refreshByPaths(paths);
+        subtreeRoots(removed).forEach(f -> addToAncestors(f, 1));
+        diskFileCacheService.evictFiles(roots);
+        return rows;
     }
 
     /**
-     * 递归列表
-     *
-     * @param list 分类表
-     * @param t 子节点
+     * 去掉被其他路径包含的路径，剩下的每个前缀对应一个互不重叠的子树
      */
-    private void recursionFn(List<DiskFile> list, DiskFile t)
+    private static List<String> topPaths(List<DiskFile> files)
     {
-        // 得到子节点列表
-        List<DiskFile> childList = getChildList(list, t);
-        t.setChildren(childList);
-        for (DiskFile tChild : childList)
-        {
-            if (hasChild(list, tChild))
-            {
-                recursionFn(list, tChild);
+        List<String> paths = files.stream().map(DiskFile::getPath).filter(StringUtils::isNotEmpty)
+                .sorted().collect(Collectors.toList());
+        List<String> top = new ArrayList<>();
+        for (String path : paths) {
+            // 排序后以某个前缀开头的路径连续出现，只需与上一个保留的路径比较
+            if (top.isEmpty() || !path.startsWith(top.get(top.size() - 1))) {
+                top.add(path);
             }
         }
+        return top;
     }
 
-    /**
-     * 得到子节点列表
-     */
-    public List<DiskFile> getChildList(List<DiskFile> list, DiskFile t)
-    {
-        List<DiskFile> tlist = new ArrayList<>();
-        Iterator<DiskFile> it = list.iterator();
-        while (it.hasNext())
-        {
-            DiskFile n = (DiskFile) it.next();
-            if (n.getParentId().longValue() == t.getId().longValue())
-            {
-                tlist.add(n);
-            }
-        }
-        return tlist;
+    @Override
+    @Transactional
+    public int save(DiskFile diskFile, DiskStorage diskStorage) {
+        diskQuotaService.reserve(diskStorage, nvl(diskFile.getSize()));
+        int i = this.insertDiskFile(diskFile);
+        if (i==0) throw new ServiceException("上传失败");
+        return i;
     }
 
-    /**
-     * 判断是否有子节点
-     */
-    public boolean hasChild(List<DiskFile> list, DiskFile t)
-    {
-        return getChildList(list, t).size() > 0;
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int save(DiskFile diskFile, DiskStorage diskStorage, MultipartFile file) throws IOException {
+        if (file.getOriginalFilename().length() > FileUploadUtils.DEFAULT_FILE_NAME_LENGTH) {
+            throw new ServiceException("文件名称超长限制为" + FileUploadUtils.DEFAULT_FILE_NAME_LENGTH);
+        }
+        try {
+            FileUploadUtils.assertAllowed(file, MimeTypeUtils.DEFAULT_ALLOWED_EXTENSION);
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        // 先占用容量再写入文件内容，事务回滚时自动释放
+        diskQuotaService.reserve(diskStorage, nvl(diskFile.getSize()));
+        DiskBlob blob = diskBlobService.store(file);
+        diskFile.setUrl(blob.getUrl());
+        diskFile.setHash(blob.getHash());
+        int i = this.insertDiskFile(diskFile);
+        if (i==0) throw new ServiceException("上传失败");
+        return i;
     }
 
     @Override
@@ -575,14 +732,17 @@ public class DiskFileServiceImpl implements IDiskFileService
         log.info("=== 开始删除文件及其子文件 ===");
         log.info("待删除的文件ID列表: {}", delFileIds);
         
-        List<DiskFile> allDelFiles = this.selectDiskFileListByIdsIgnoreDel(delFileIds.toArray(new Long[0]));
-        List<DiskFile> allDiskFiles = this.selectAllByUserIdIgnoreDel(SecurityUtils.getUserId());
-        delFileIds.forEach(parentId -> this.getChildPerms(allDiskFiles,allDelFiles,parentId));
+        List<DiskFile> allDelFiles = this.selectSubtreeByIds(delFileIds.toArray(new Long[0]), true);
         
         log.info("包含子文件后共需删除 {} 个文件", allDelFiles.size());
         
         allDelFiles.forEach(diskFile -> {
             log.info("--- 处理文件: {} (ID: {})", diskFile.getName(), diskFile.getId());
+            if (StringUtils.isNotEmpty(diskFile.getHash())) {
+                // 去重存储的文件只释放引用，引用次数为0时才删除物理文件
+                diskBlobService.release(diskFile.getHash());
+                return;
+            }
             log.info("文件URL: {}", diskFile.getUrl());
             log.info("是否为目录: {}", diskFile.getIsDir());
             
@@ -612,8 +772,109 @@ public class DiskFileServiceImpl implements IDiskFileService
         return result;
     }
 
+    @Override
+    @Transactional
+    public int deleteMissingFiles(List<DiskFile> files) {
+        if (files.isEmpty()) {
+            return 0;
+        }
+        // 重新读取仍未删除的记录，已被用户删除或移入回收站的已经释放过引用和容量
+        List<DiskFile> active = diskFileMapper.selectDiskFileListByIds(
+                files.stream().map(DiskFile::getId).distinct().toArray(Long[]::new));
+        if (active.isEmpty()) {
+            return 0;
+        }
+        int rows = this.deleteDiskFileByIds(active.stream().map(DiskFile::getId).toArray(Long[]::new));
+        Map<Long, Long> sizeByUser = new HashMap<>();
+        for (DiskFile file : active) {
+            if (StringUtils.isNotEmpty(file.getHash())) {
+                diskBlobService.release(file.getHash());
+            }
+            if (file.getCreateId() != null && nvl(file.getSize()) > 0) {
+                sizeByUser.merge(file.getCreateId(), file.getSize(), Long::sum);
+            }
+        }
+        sizeByUser.forEach((userId, size) -> {
+            log.info("用户 {} 清理无效文件，释放容量: {} bytes", userId, size);
+            diskQuotaService.release(userId, size);
+        });
+        return rows;
+    }
+
     @Override
     public List<Long> selectAllIdsByUserId(Long userId) {
         return diskFileMapper.selectAllIdsByUserId(userId);
     }
+
+    @Override
+    public int repairSubtreeAggregates(Long userId) {
+        List<Long> userIds = userId != null ? Collections.singletonList(userId) : diskFileMapper.selectAllUserIds();
+        int repaired = 0;
+        for (Long uid : userIds) {
+            Integer count = requiresNew.execute(status -> repairSubtreeAggregatesOfUser(uid));
+            repaired += count == null ? 0 : count;
+        }
+        if (repaired > 0) {
+            log.info("目录汇总修复完成，修正 {} 个目录", repaired);
+            diskFileCacheService.evictUser(userId);
+        }
+        return repaired;
+    }
+
+    @Override
+    public int repairPaths() {
+        int repaired = diskFileMapper.rebuildPaths();
+        if (repaired > 0) {
+            log.info("物化路径修复完成，修正 {} 个文件", repaired);
+            diskFileCacheService.evictUser(null);
+        }
+        return repaired;
+    }
+
+    /**
+     * 修复单个用户的目录汇总，需在事务中调用
+     * 先锁定该用户的全部记录再计算和写回，期间其他事务对该用户目录汇总的增量更新会等待，不会被写回的结果覆盖
+     */
+    private int repairSubtreeAggregatesOfUser(Long userId) {
+        List<DiskFile> files = diskFileMapper.selectAllByUserIdForUpdate(userId);
+        Map<Long, List<DiskFile>> childrenMap = files.stream().collect(Collectors.groupingBy(f -> f.getParentId() == null ? 0L : f.getParentId()));
+        Map<Long, long[]> totals = new HashMap<>();
+        int repaired = 0;
+        for (DiskFile file : files) {
+            if (file.getIsDir() == null || file.getIsDir() != 1) {
+                continue;
+            }
+            long[] total = subtreeTotals(file, childrenMap, totals);
+            if (total[0] != nvl(file.getSubtreeSize()) || total[1] != nvl(file.getSubtreeCount())) {
+                repaired += diskFileMapper.updateSubtreeAggregate(file.getId(), total[0], total[1]);
+            }
+        }
+        return repaired;
+    }
+
+    /**
+     * 计算目录下未删除文件的总大小和数量
+     */
+    private long[] subtreeTotals(DiskFile dir, Map<Long, List<DiskFile>> childrenMap, Map<Long, long[]> totals)
+    {
+        long[] total = totals.get(dir.getId());
+        if (total != null) {
+            return total;
+        }
+        total = new long[2];
+        for (DiskFile child : childrenMap.getOrDefault(dir.getId(), Collections.emptyList())) {
+            if (!"0".equals(child.getDelFlag())) {
+                continue;
+            }
+            total[0] += nvl(child.getSize());
+            total[1]++;
+            if (child.getIsDir() != null && child.getIsDir() == 1) {
+                long[] sub = subtreeTotals(child, childrenMap, totals);
+                total[0] += sub[0];
+                total[1] += sub[1];
+            }
+        }
+        totals.put(dir.getId(), total);
+        return total;
+    }
 }
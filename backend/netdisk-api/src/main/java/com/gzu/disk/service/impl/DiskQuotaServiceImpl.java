@@ -0,0 +1,293 @@
+package com.gzu.disk.service.impl;
+
+import com.gzu.common.core.redis.RedisLock;
+import com.gzu.common.exception.ServiceException;
+import com.gzu.disk.domain.DiskStorage;
+import com.gzu.disk.mapper.DiskStorageMapper;
+import com.gzu.disk.service.IDiskQuotaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 存储容量配额Service业务层处理
+ * 数据库模式下用带容量条件的 used_capacity = used_capacity + ? 原子更新，在独立的短事务中执行，
+ * 行锁只在这一条语句期间持有，不会随上传事务一直占用；
+ * Redis计数模式下占用和释放只修改Redis中的计数，定时批量写回数据库，适合个别用户并发上传很多的场景；
+ * 此时Redis中的计数是准确值，重置时同时改写计数，写回由一个节点持锁执行
+ */
+@Service
+public class DiskQuotaServiceImpl implements IDiskQuotaService
+{
+    private static final Logger log = LoggerFactory.getLogger(DiskQuotaServiceImpl.class);
+
+    /** 用户已用容量计数 */
+    private static final String USED_KEY = "disk_quota:used:";
+
+    /** 计数有变化、等待写回数据库的用户 */
+    private static final String DIRTY_KEY = "disk_quota:dirty";
+
+    /** 写回数据库的锁，多节点部署时同一时间只有一个节点写回 */
+    private static final String FLUSH_LOCK_KEY = "disk_quota:flush_lock";
+
+    /** 写回锁的过期时间（分钟） */
+    private static final long FLUSH_LOCK_MINUTES = 5;
+
+    /**
+     * 计数不存在返回-2，占用后超过总容量返回-1，否则返回更新后的计数
+     */
+    private static final String APPLY_SCRIPT = "local used = redis.call('get', KEYS[1])\n" +
+            "if not used then return -2 end\n" +
+            "used = tonumber(used)\n" +
+            "local delta = tonumber(ARGV[1])\n" +
+            "if delta > 0 and used + delta > tonumber(ARGV[2]) then return -1 end\n" +
+            "used = math.max(used + delta, 0)\n" +
+            "redis.call('set', KEYS[1], used)\n" +
+            "redis.call('sadd', KEYS[2], ARGV[3])\n" +
+            "return used";
+
+    /**
+     * 改写计数并标记为待写回
+     */
+    private static final String RESEED_SCRIPT = "redis.call('set', KEYS[1], ARGV[1])\n" +
+            "redis.call('sadd', KEYS[2], ARGV[2])\n" +
+            "return 1";
+
+    @Autowired
+    private DiskStorageMapper diskStorageMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RedisLock redisLock;
+
+    /** 是否使用Redis计数，关闭时直接原子更新数据库 */
+    @Value("${disk.quota.redisCounter:false}")
+    private boolean redisCounter;
+
+    private TransactionTemplate requiresNew;
+
+    private final DefaultRedisScript<Long> applyScript = new DefaultRedisScript<>(APPLY_SCRIPT, Long.class);
+
+    private final DefaultRedisScript<Long> reseedScript = new DefaultRedisScript<>(RESEED_SCRIPT, Long.class);
+
+    private final LongAdder reservedBytes = new LongAdder();
+
+    private final LongAdder releasedBytes = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder flushed = new LongAdder();
+
+    @PostConstruct
+    public void init()
+    {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void reserve(DiskStorage storage, long bytes)
+    {
+        if (bytes <= 0)
+        {
+            return;
+        }
+        Long userId = storage.getCreateId();
+        long total = storage.getTotalCapacity() == null ? 0L : storage.getTotalCapacity();
+        boolean reserved = redisCounter ? applyInRedis(userId, bytes, total)
+                : Boolean.TRUE.equals(requiresNew.execute(status -> diskStorageMapper.reserveUsedCapacity(userId, bytes) > 0));
+        if (!reserved)
+        {
+            rejected.increment();
+            throw new ServiceException("存储空间不足");
+        }
+        reservedBytes.add(bytes);
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    if (status == STATUS_ROLLED_BACK)
+                    {
+                        doRelease(userId, bytes);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void release(Long userId, long bytes)
+    {
+        if (userId == null || bytes <= 0)
+        {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            doRelease(userId, bytes);
+            return;
+        }
+        // 删除随事务回滚时容量不应减少
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                doRelease(userId, bytes);
+            }
+        });
+    }
+
+    @Override
+    public void reset(Long userId, long usedCapacity)
+    {
+        diskStorageMapper.updateUsedCapacityByUserId(userId, usedCapacity);
+        if (!redisCounter)
+        {
+            return;
+        }
+        // 改写计数而不是删除：写回任务可能已读到旧计数，删除后下次占用会从数据库加载到被旧值覆盖的结果；
+        // 改写后重新标记为待写回，即使旧值先写回，下一次写回也会用新计数修正
+        Runnable reseed = () -> stringRedisTemplate.execute(reseedScript, Arrays.asList(USED_KEY + userId, DIRTY_KEY),
+                String.valueOf(usedCapacity), String.valueOf(userId));
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            reseed.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                reseed.run();
+            }
+        });
+    }
+
+    /**
+     * 将Redis中有变化的计数写回数据库，持锁执行，避免多个节点以不同先后的计数相互覆盖
+     */
+    @Scheduled(fixedDelayString = "${disk.quota.flushMillis:5000}")
+    public void flush()
+    {
+        if (!redisCounter)
+        {
+            return;
+        }
+        String token = null;
+        try
+        {
+            token = redisLock.tryLock(FLUSH_LOCK_KEY, FLUSH_LOCK_MINUTES, TimeUnit.MINUTES);
+            if (token == null)
+            {
+                return;
+            }
+            String member;
+            while ((member = stringRedisTemplate.opsForSet().pop(DIRTY_KEY)) != null)
+            {
+                String used = stringRedisTemplate.opsForValue().get(USED_KEY + member);
+                if (used != null)
+                {
+                    diskStorageMapper.updateUsedCapacityByUserId(Long.valueOf(member), Long.parseLong(used));
+                    flushed.increment();
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("写回存储容量计数失败: {}", e.getMessage());
+        }
+        finally
+        {
+            if (token != null)
+            {
+                redisLock.unlock(FLUSH_LOCK_KEY, token);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics()
+    {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("redisCounter", redisCounter);
+        metrics.put("reservedBytes", reservedBytes.sum());
+        metrics.put("releasedBytes", releasedBytes.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("flushed", flushed.sum());
+        return metrics;
+    }
+
+    private void doRelease(Long userId, long bytes)
+    {
+        try
+        {
+            if (redisCounter)
+            {
+                applyInRedis(userId, -bytes, Long.MAX_VALUE);
+            }
+            else
+            {
+                requiresNew.execute(status -> diskStorageMapper.releaseUsedCapacity(userId, bytes));
+            }
+            releasedBytes.add(bytes);
+        }
+        catch (Exception e)
+        {
+            log.error("释放用户 {} 的存储容量 {} bytes 失败", userId, bytes, e);
+        }
+    }
+
+    /**
+     * 在Redis中增减计数，计数不存在时先从数据库加载
+     *
+     * @return 是否成功，存储不存在或空间不足时返回false
+     */
+    private boolean applyInRedis(Long userId, long delta, long total)
+    {
+        String key = USED_KEY + userId;
+        for (int attempt = 0; attempt < 2; attempt++)
+        {
+            Long result = stringRedisTemplate.execute(applyScript, Arrays.asList(key, DIRTY_KEY),
+                    String.valueOf(delta), String.valueOf(total), String.valueOf(userId));
+            if (result == null || result != -2)
+            {
+                return result != null && result >= 0;
+            }
+            DiskStorage storage = diskStorageMapper.selectDiskStorageByUserId(userId);
+            if (storage == null)
+            {
+                return false;
+            }
+            long used = storage.getUsedCapacity() == null ? 0L : storage.getUsedCapacity();
+            stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(used));
+        }
+        return false;
+    }
+}
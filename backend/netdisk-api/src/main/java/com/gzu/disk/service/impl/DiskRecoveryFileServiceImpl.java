@@ -7,9 +7,8 @@ import com.gzu.common.exception.ServiceException;
 import com.gzu.common.utils.DateUtils;
 import com.gzu.common.utils.SecurityUtils;
 import com.gzu.disk.domain.DiskFile;
-import com.gzu.disk.domain.DiskStorage;
 import com.gzu.disk.service.IDiskFileService;
-import com.gzu.disk.service.IDiskStorageService;
+import com.gzu.disk.service.IDiskQuotaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,7 +36,7 @@ public class DiskRecoveryFileServiceImpl implements IDiskRecoveryFileService
     private IDiskFileService diskFileService;
 
     @Autowired
-    private IDiskStorageService diskStorageService;
+    private IDiskQuotaService diskQuotaService;
 
     /**
      * 查询回收站
@@ -99,8 +98,6 @@ public class DiskRecoveryFileServiceImpl implements IDiskRecoveryFileService
     @Transactional
     public int deleteDiskRecoveryFileByIds(Long[] ids)
     {
-        // 获取当前用户本人的存储目录
-        DiskStorage diskStorage = diskStorageService.selectDiskStorageByUserId(SecurityUtils.getUserId());
         //查询回收的文件
         List<DiskRecoveryFile> diskRecoveryFiles = diskRecoveryFileMapper.selectDiskRecoveryFileByIdsAndUserId(ids, SecurityUtils.getUserId());
         //更新已经用的容量
@@ -109,8 +106,7 @@ public class DiskRecoveryFileServiceImpl implements IDiskRecoveryFileService
             usedCapacity = usedCapacity + diskRecoveryFile.getDiskFileList().stream().map(DiskFile::getSize)
                     .reduce(0L, Long::sum);
         }
-        diskStorageService.updateUsedCapacity(diskStorage.getId()
-                , diskStorage.getUsedCapacity() - usedCapacity);
+        diskQuotaService.release(SecurityUtils.getUserId(), usedCapacity);
 
         //删除文件
         List<Long> delFileIds = diskRecoveryFiles.stream().map(DiskRecoveryFile::getFileId).collect(Collectors.toList());
@@ -141,11 +137,7 @@ public class DiskRecoveryFileServiceImpl implements IDiskRecoveryFileService
         List<DiskRecoveryFile> diskRecoveryFiles = diskRecoveryFileMapper.selectDiskRecoveryFileByIdsAndUserId(ids, userId);
         if (diskRecoveryFiles.size()==0) throw new ServiceException("回收的文件不存在");
         List<Long> decoveryFileIds = diskRecoveryFiles.stream().map(DiskRecoveryFile::getFileId).collect(Collectors.toList());
-        List<DiskFile> allDecoveryFiles = diskFileService.selectDiskFileListByIdsIgnoreDel(decoveryFileIds.toArray(new Long[0]));
-        List<DiskFile> allDiskFiles = diskFileService.selectAllByUserIdIgnoreDel(userId);
-        decoveryFileIds.forEach(parentId -> diskFileService.getChildPerms(allDiskFiles,allDecoveryFiles,parentId));
-        diskFileService.refresh(allDecoveryFiles.stream().map(DiskFile::getId)
-                .toArray(Long[]::new));
+        diskFileService.refreshTree(decoveryFileIds.toArray(new Long[0]));
         return diskRecoveryFileMapper.deleteDiskRecoveryFileByIds(ids);
     }
 
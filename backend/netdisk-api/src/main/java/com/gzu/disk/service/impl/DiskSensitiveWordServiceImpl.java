@@ -1,15 +1,26 @@
 package com.gzu.disk.service.impl;
 
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import cn.hutool.core.collection.CollectionUtil;
+import javax.annotation.PostConstruct;
+
 import com.gzu.common.exception.ServiceException;
 import com.gzu.common.utils.DateUtils;
-import com.gzu.maple.commom.utils.SensitiveFilterUtil;
+import com.gzu.common.utils.SensitiveWordMatcher;
+import com.gzu.common.utils.uuid.IdUtils;
 import com.gzu.system.service.ISysConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import com.gzu.disk.mapper.DiskSensitiveWordMapper;
 import com.gzu.disk.domain.DiskSensitiveWord;
@@ -17,6 +28,7 @@ import com.gzu.disk.service.IDiskSensitiveWordService;
 
 /**
  * 敏感词Service业务层处理
+ * 词库在启动和每次增删改后构建为不可变的匹配器并整体替换，检测时不再查询词库
  * 
  * @author maple
  * @date 2024-04-17
@@ -24,12 +36,52 @@ import com.gzu.disk.service.IDiskSensitiveWordService;
 @Service
 public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService 
 {
+    private static final Logger log = LoggerFactory.getLogger(DiskSensitiveWordServiceImpl.class);
+
+    /** 单字敏感词不参与检测，与原DFA实现的行为一致 */
+    private static final int MIN_WORD_LENGTH = 2;
+
+    /** 过滤开关的本地缓存时间 */
+    private static final long FILTER_FLAG_TTL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
     @Autowired
     private DiskSensitiveWordMapper diskSensitiveWordMapper;
 
     @Autowired
     private ISysConfigService configService;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /** 多节点部署时通知其他节点重新加载词库的Redis频道 */
+    @Value("${disk.sensitive.channel:disk:sensitive:reload}")
+    private String channel;
+
+    /** 本节点标识，收到自己发出的通知时忽略 */
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private volatile SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Collections.emptyList());
+
+    private volatile boolean filterEnabled = true;
+
+    private volatile long filterFlagExpireAt;
+
+    @PostConstruct
+    public void init()
+    {
+        reload();
+        redisMessageListenerContainer.addMessageListener((message, pattern) ->
+        {
+            if (!nodeId.equals(new String(message.getBody(), StandardCharsets.UTF_8)))
+            {
+                reload();
+            }
+        }, new ChannelTopic(channel));
+    }
+
     /**
      * 查询敏感词
      * 
@@ -64,7 +116,7 @@ public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService
     public int insertDiskSensitiveWord(DiskSensitiveWord diskSensitiveWord)
     {
         diskSensitiveWord.setCreateTime(DateUtils.getNowDate());
-        return diskSensitiveWordMapper.insertDiskSensitiveWord(diskSensitiveWord);
+        return reloadAfter(diskSensitiveWordMapper.insertDiskSensitiveWord(diskSensitiveWord));
     }
 
     /**
@@ -77,7 +129,7 @@ public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService
     public int updateDiskSensitiveWord(DiskSensitiveWord diskSensitiveWord)
     {
         diskSensitiveWord.setUpdateTime(DateUtils.getNowDate());
-        return diskSensitiveWordMapper.updateDiskSensitiveWord(diskSensitiveWord);
+        return reloadAfter(diskSensitiveWordMapper.updateDiskSensitiveWord(diskSensitiveWord));
     }
 
     /**
@@ -89,7 +141,7 @@ public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService
     @Override
     public int deleteDiskSensitiveWordByIds(Long[] ids)
     {
-        return diskSensitiveWordMapper.deleteDiskSensitiveWordByIds(ids);
+        return reloadAfter(diskSensitiveWordMapper.deleteDiskSensitiveWordByIds(ids));
     }
 
     /**
@@ -101,7 +153,7 @@ public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService
     @Override
     public int deleteDiskSensitiveWordById(Long id)
     {
-        return diskSensitiveWordMapper.deleteDiskSensitiveWordById(id);
+        return reloadAfter(diskSensitiveWordMapper.deleteDiskSensitiveWordById(id));
     }
 
     @Override
@@ -111,25 +163,47 @@ public class DiskSensitiveWordServiceImpl implements IDiskSensitiveWordService
 
     @Override
     public boolean filterSensitiveWord(String text) {
-        String ifFilter = configService.selectConfigByKey("sensitiveWord.ifFilter");
-        if ("false".equals(ifFilter)) return false;
-        //        BitMapBloomFilter filter = new BitMapBloomFilter(sensitiveWordList.size());
-//        sensitiveWordList.forEach(filter::add);
-//        return filter.contains(text);
-//        BadWordFilter.loadConfigs(sensitiveWordList);
-//        return BadWordFilter.filterText(text);
-        //这里我的敏感词存在数据库 大家结合自己的业务需求改动 可以存在txt文件中或者excel
-//        QueryFilter filter = new QueryFilter(DsSensitiveWords.class);
-//        filter.addFilter("type=", type);
-//        List<DsSensitiveWords> list = dsSensitiveWordsService.find(filter);
-//        for (DsSensitiveWords dsSensitiveWords : list) {
-//            //从数据库中取出敏感词 且用set去重
-//            set.add(dsSensitiveWords.getWords());
-//        }
-        HashSet<String> set = this.selectDiskSensitiveWordAllList()
-                .stream().map(DiskSensitiveWord::getSensitiveWord).collect(Collectors.toCollection(HashSet::new));
-        HashSet hashSet = SensitiveFilterUtil.checkTxt(text, set);
-        if (CollectionUtil.isEmpty(hashSet)) return false;
-        throw new ServiceException("有敏感词 "+ hashSet);
+        if (text == null || !isFilterEnabled()) return false;
+        SensitiveWordMatcher current = matcher;
+        if (!current.contains(text)) return false;
+        Set<String> words = current.findAll(text);
+        throw new ServiceException("有敏感词 " + words);
+    }
+
+    @Override
+    public void reload() {
+        List<String> words = this.selectDiskSensitiveWordAllList().stream()
+                .map(DiskSensitiveWord::getSensitiveWord)
+                .filter(word -> word != null && word.length() >= MIN_WORD_LENGTH)
+                .collect(Collectors.toList());
+        matcher = SensitiveWordMatcher.build(words);
+        log.info("敏感词库加载完成, 数量: {}", matcher.size());
+    }
+
+    /**
+     * 词库变更后重新构建匹配器，并通知其他节点
+     */
+    private int reloadAfter(int rows) {
+        if (rows > 0) {
+            reload();
+            try {
+                stringRedisTemplate.convertAndSend(channel, nodeId);
+            } catch (Exception e) {
+                log.warn("发送敏感词库更新通知失败: {}", e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 过滤开关，参数配置本身在Redis中，本地缓存一小段时间以免每次检测都访问Redis
+     */
+    private boolean isFilterEnabled() {
+        long now = System.currentTimeMillis();
+        if (now >= filterFlagExpireAt) {
+            filterEnabled = !"false".equals(configService.selectConfigByKey("sensitiveWord.ifFilter"));
+            filterFlagExpireAt = now + FILTER_FLAG_TTL_MILLIS;
+        }
+        return filterEnabled;
     }
 }
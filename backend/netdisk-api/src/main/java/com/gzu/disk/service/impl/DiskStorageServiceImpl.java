@@ -67,27 +67,7 @@ public class DiskStorageServiceImpl implements IDiskStorageService
     {
         DiskStorage diskStorage1 = diskStorageMapper.selectDiskStorageByUserId(diskStorage.getCreateId());
         if (Objects.nonNull(diskStorage1)) return updateDiskStorage(diskStorage);
-        diskStorage.setCreateTime(DateUtils.getNowDate());
-        diskStorage.setTotalCapacity(Long.valueOf(configService.selectConfigByKey("storage.capacity")));
-        
-        // 使用用户名作为基础目录，如果获取不到则使用随机字符串
-        String baseDir;
-        try {
-            SysUser user = sysUserService.selectUserById(diskStorage.getCreateId());
-            if (user != null && user.getUserName() != null) {
-                // 使用用户名，移除特殊字符确保文件系统兼容
-                baseDir = user.getUserName().replaceAll("[^a-zA-Z0-9_-]", "_");
-            } else {
-                // 如果获取不到用户信息，使用 user_ID 格式
-                baseDir = "user_" + diskStorage.getCreateId();
-            }
-        } catch (Exception e) {
-            // 异常情况下使用随机字符串
-            baseDir = RandomUtil.randomString(6);
-        }
-        
-        diskStorage.setBaseDir(baseDir);
-        return diskStorageMapper.insertDiskStorage(diskStorage);
+        return createDiskStorage(diskStorage);
     }
 
     /**
@@ -132,6 +112,45 @@ public class DiskStorageServiceImpl implements IDiskStorageService
         return diskStorageMapper.selectDiskStorageByUserId(userId);
     }
 
+    @Override
+    public synchronized DiskStorage initDiskStorage(Long userId)
+    {
+        DiskStorage diskStorage = diskStorageMapper.selectDiskStorageByUserId(userId);
+        if (Objects.nonNull(diskStorage)) return diskStorage;
+        diskStorage = new DiskStorage();
+        diskStorage.setCreateId(userId);
+        createDiskStorage(diskStorage);
+        return diskStorageMapper.selectDiskStorageByUserId(userId);
+    }
+
+    /**
+     * 按默认容量创建用户存储
+     */
+    private int createDiskStorage(DiskStorage diskStorage)
+    {
+        diskStorage.setCreateTime(DateUtils.getNowDate());
+        diskStorage.setTotalCapacity(Long.valueOf(configService.selectConfigByKey("storage.capacity")));
+        
+        // 使用用户名作为基础目录，如果获取不到则使用随机字符串
+        String baseDir;
+        try {
+            SysUser user = sysUserService.selectUserById(diskStorage.getCreateId());
+            if (user != null && user.getUserName() != null) {
+                // 使用用户名，移除特殊字符确保文件系统兼容
+                baseDir = user.getUserName().replaceAll("[^a-zA-Z0-9_-]", "_");
+            } else {
+                // 如果获取不到用户信息，使用 user_ID 格式
+                baseDir = "user_" + diskStorage.getCreateId();
+            }
+        } catch (Exception e) {
+            // 异常情况下使用随机字符串
+            baseDir = RandomUtil.randomString(6);
+        }
+        
+        diskStorage.setBaseDir(baseDir);
+        return diskStorageMapper.insertDiskStorage(diskStorage);
+    }
+
     @Override
     public int updateUsedCapacity(Long id, long usedCapacity) {
         return diskStorageMapper.updateUsedCapacity(id,usedCapacity);
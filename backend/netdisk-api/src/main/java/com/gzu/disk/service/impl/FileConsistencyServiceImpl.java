@@ -5,26 +5,52 @@ import com.gzu.common.constant.Constants;
 import com.gzu.common.utils.StringUtils;
 import com.gzu.common.utils.file.FileUtils;
 import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.disk.domain.DiskConsistencyCheckpoint;
 import com.gzu.disk.domain.DiskFile;
-import com.gzu.disk.domain.DiskStorage;
+import com.gzu.disk.mapper.DiskConsistencyCheckpointMapper;
+import com.gzu.disk.mapper.DiskFileMapper;
 import com.gzu.disk.service.IFileConsistencyService;
 import com.gzu.disk.service.IDiskFileService;
-import com.gzu.disk.service.IDiskStorageService;
+import org.apache.hadoop.fs.FileStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * 文件一致性检查服务实现
+ * 检查时按目录列举物理文件（HDFS listStatus / 本地 DirectoryStream），每个目录一次调用，
+ * 多个目录在有界线程池中并行列举，不再对每个文件单独查询数据库和探测存在性；
+ * 无效记录在每批各自的短事务中清理，定时检查按进度表分批推进，每次检查的文件数有上限
  * 
  * @author netdisk
  */
@@ -33,134 +59,127 @@ public class FileConsistencyServiceImpl implements IFileConsistencyService {
 
     private static final Logger log = LoggerFactory.getLogger(FileConsistencyServiceImpl.class);
 
+    /** 定时检查的进度记录 */
+    private static final String SCAN_KEY = "all";
+
     @Autowired
     private IDiskFileService diskFileService;
 
     @Autowired
-    private IDiskStorageService diskStorageService;
+    private DiskFileMapper diskFileMapper;
+
+    @Autowired
+    private DiskConsistencyCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** 定时检查每次最多检查的文件数，超出部分留到下次 */
+    @Value("${disk.consistency.maxRowsPerTick:5000}")
+    private int maxRowsPerTick;
+
+    /** 每批从数据库读取的文件记录数 */
+    @Value("${disk.consistency.scanBatchSize:1000}")
+    private int scanBatchSize;
+
+    /** 同时列举的目录数 */
+    @Value("${disk.consistency.scanParallelism:4}")
+    private int scanParallelism;
+
+    /** 列举目录的线程池，HDFS listStatus 和本地目录读取都是阻塞调用，不占用公共线程池 */
+    private ExecutorService scanExecutor;
+
+    /** 每批清理使用独立的短事务 */
+    private TransactionTemplate transactionTemplate;
+
+    /** 物理文件存在的结果缓存时间（毫秒），0表示不缓存 */
+    @Value("${disk.consistency.existsCacheMillis:10000}")
+    private long existsCacheMillis;
+
+    /** 最多缓存的存在文件条目数 */
+    @Value("${disk.consistency.existsCacheSize:10000}")
+    private int existsCacheSize;
+
+    /**
+     * 已确认存在的相对路径到过期时间的短期缓存，访问时持有该对象锁。
+     * 不存在的结果不缓存：打开文件前的校验会据此删除记录，而去重内容的路径会被重新写入
+     */
+    private Map<String, Long> presence;
+
+    private final LongAdder scans = new LongAdder();
+
+    private final LongAdder filesScanned = new LongAdder();
+
+    private final LongAdder directoriesListed = new LongAdder();
+
+    private final LongAdder listingFailures = new LongAdder();
+
+    private final LongAdder missingFound = new LongAdder();
+
+    private final LongAdder existsChecks = new LongAdder();
+
+    private final LongAdder existsCacheHits = new LongAdder();
+
+    private volatile long lastElapsedMillis;
+
+    private volatile long lastFilesPerSecond;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, scanParallelism);
+        AtomicInteger sequence = new AtomicInteger();
+        scanExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "consistency-scan-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ((ThreadPoolExecutor) scanExecutor).allowCoreThreadTimeOut(true);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        int capacity = Math.max(1, existsCacheSize);
+        presence = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scanExecutor.shutdownNow();
+    }
 
     @Override
-    @Transactional
     public Map<String, Object> checkAndCleanInvalidFiles(Long userId) {
         log.info("========== 开始检查文件一致性 ==========");
         log.info("用户ID: {}", userId == null ? "全部用户" : userId);
         
         Map<String, Object> result = new HashMap<>();
         
-        // 获取所有需要检查的文件
-        List<DiskFile> allFiles;
-        if (userId != null) {
-            allFiles = diskFileService.selectAllByUserId(userId);
-        } else {
-            allFiles = diskFileService.selectAll();
-        }
-        
-        log.info("共需检查 {} 个文件记录", allFiles.size());
-        
+        // 按ID顺序分批读取文件记录，每批按目录列举后在内存中比对，无效记录在每批各自的事务中清理
+        long startTime = System.currentTimeMillis();
         List<DiskFile> invalidFiles = new ArrayList<>();
-        List<DiskFile> validFiles = new ArrayList<>();
-        long totalInvalidSize = 0;
-        
-        // 检查每个文件
-        for (DiskFile file : allFiles) {
-            // 跳过目录
-            if (file.getIsDir() != null && file.getIsDir() == 1) {
-                validFiles.add(file);
-                continue;
-            }
-            
-            String url = file.getUrl();
-            if (StringUtils.isEmpty(url)) {
-                log.warn("文件 {} (ID: {}) URL为空，标记为无效", file.getName(), file.getId());
-                invalidFiles.add(file);
-                totalInvalidSize += file.getSize() != null ? file.getSize() : 0;
-                continue;
-            }
-            
-            // 构建文件路径
-            String localPath = RuoYiConfig.getProfile();
-            String filePath = localPath + StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX);
-            
-            boolean exists = false;
+        AtomicInteger cleanedCount = new AtomicInteger();
+        int totalFiles = scan(userId, missing -> {
+            invalidFiles.addAll(missing);
             try {
-                if (HdfsUtils.isHdfsEnabled()) {
-                    // 检查HDFS文件
-                    String hdfsPath = HdfsUtils.buildHdfsPath(StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX));
-                    exists = HdfsUtils.exists(hdfsPath);
-                    if (!exists) {
-                        log.debug("HDFS文件不存在: {} -> {}", file.getName(), hdfsPath);
-                    }
-                } else {
-                    // 检查本地文件
-                    File localFile = new File(filePath);
-                    exists = localFile.exists();
-                    if (!exists) {
-                        log.debug("本地文件不存在: {} -> {}", file.getName(), filePath);
-                    }
-                }
+                cleanedCount.addAndGet(transactionTemplate.execute(status -> diskFileService.deleteMissingFiles(missing)));
             } catch (Exception e) {
-                log.error("检查文件存在性时出错: {}", file.getName(), e);
-                exists = false;
+                log.error("清理无效文件记录时出错", e);
             }
-            
-            if (!exists) {
-                invalidFiles.add(file);
-                totalInvalidSize += file.getSize() != null ? file.getSize() : 0;
-            } else {
-                validFiles.add(file);
-            }
-        }
-        
-        log.info("检查完成: 有效文件 {}, 无效文件 {}", validFiles.size(), invalidFiles.size());
-        
-        // 清理无效文件记录
-        int cleanedCount = 0;
-        if (!invalidFiles.isEmpty()) {
-            log.info("开始清理无效文件记录...");
-            
-            // 按用户分组清理
-            Map<Long, List<DiskFile>> filesByUser = invalidFiles.stream()
-                    .collect(Collectors.groupingBy(DiskFile::getCreateId));
-            
-            for (Map.Entry<Long, List<DiskFile>> entry : filesByUser.entrySet()) {
-                Long fileUserId = entry.getKey();
-                List<DiskFile> userInvalidFiles = entry.getValue();
-                long userTotalSize = userInvalidFiles.stream()
-                        .mapToLong(f -> f.getSize() != null ? f.getSize() : 0)
-                        .sum();
-                
-                log.info("用户 {} 有 {} 个无效文件，总大小: {} bytes", fileUserId, userInvalidFiles.size(), userTotalSize);
-                
-                // 物理删除文件记录（因为文件已经不存在了）
-                Long[] fileIds = userInvalidFiles.stream()
-                        .map(DiskFile::getId)
-                        .toArray(Long[]::new);
-                
-                try {
-                    int deleted = diskFileService.deleteDiskFileByIds(fileIds);
-                    cleanedCount += deleted;
-                    log.info("已物理删除 {} 条无效记录", deleted);
-                    
-                    // 更新用户存储容量
-                    DiskStorage storage = diskStorageService.selectDiskStorageByUserId(fileUserId);
-                    if (storage != null) {
-                        long newUsedCapacity = Math.max(0, storage.getUsedCapacity() - userTotalSize);
-                        storage.setUsedCapacity(newUsedCapacity);
-                        diskStorageService.updateDiskStorage(storage);
-                        log.info("已更新用户 {} 的存储容量，减少: {} bytes", fileUserId, userTotalSize);
-                    }
-                } catch (Exception e) {
-                    log.error("清理用户 {} 的无效文件时出错", fileUserId, e);
-                }
-            }
-        }
+        });
+        long elapsed = System.currentTimeMillis() - startTime;
+        long totalInvalidSize = sizeOf(invalidFiles);
         
         // 返回结果
-        result.put("totalFiles", allFiles.size());
-        result.put("validFiles", validFiles.size());
+        result.put("totalFiles", totalFiles);
+        result.put("validFiles", totalFiles - invalidFiles.size());
         result.put("invalidFiles", invalidFiles.size());
-        result.put("cleanedFiles", cleanedCount);
+        result.put("cleanedFiles", cleanedCount.get());
         result.put("reclaimedSpace", totalInvalidSize);
+        result.put("elapsedMillis", elapsed);
+        result.put("filesPerSecond", filesPerSecond(totalFiles, elapsed));
         result.put("invalidFileList", invalidFiles.stream()
                 .map(f -> {
                     Map<String, Object> fileInfo = new HashMap<>();
@@ -175,80 +194,382 @@ public class FileConsistencyServiceImpl implements IFileConsistencyService {
         );
         
         log.info("========== 文件一致性检查完成 ==========");
-        log.info("总计: {} 个文件, 有效: {}, 无效: {}, 已清理: {}, 释放空间: {} bytes", 
-                allFiles.size(), validFiles.size(), invalidFiles.size(), cleanedCount, totalInvalidSize);
+        log.info("总计: {} 个文件, 有效: {}, 无效: {}, 已清理: {}, 释放空间: {} bytes, 耗时 {} ms", 
+                totalFiles, totalFiles - invalidFiles.size(), invalidFiles.size(), cleanedCount.get(), totalInvalidSize, elapsed);
         
         return result;
     }
 
+    @Override
+    public Map<String, Object> checkNextSlices() {
+        long startTime = System.currentTimeMillis();
+        DiskConsistencyCheckpoint checkpoint = loadCheckpoint();
+        int budget = Math.max(1, maxRowsPerTick);
+        int batchSize = Math.max(1, scanBatchSize);
+        int checked = 0;
+        int slices = 0;
+        int invalid = 0;
+        int cleaned = 0;
+        long reclaimed = 0;
+        boolean finished = false;
+        while (checked < budget && !finished) {
+            int limit = Math.min(batchSize, budget - checked);
+            List<DiskFile> slice = diskFileMapper.selectFileSliceAfter(null, checkpoint.getLastId(), limit);
+            List<DiskFile> missing = slice.isEmpty() ? Collections.emptyList() : findMissing(slice);
+            // 不足一批说明已到末尾，本轮结束，下次从头开始新一轮
+            finished = slice.size() < limit;
+            DiskConsistencyCheckpoint next = new DiskConsistencyCheckpoint();
+            next.setScanKey(checkpoint.getScanKey());
+            if (finished) {
+                next.setLastId(0L);
+                next.setGeneration(checkpoint.getGeneration() + 1);
+                next.setCheckedFiles(0L);
+                next.setInvalidFiles(0L);
+            } else {
+                next.setLastId(slice.get(slice.size() - 1).getId());
+                next.setGeneration(checkpoint.getGeneration());
+                next.setCheckedFiles(checkpoint.getCheckedFiles() + slice.size());
+                next.setInvalidFiles(checkpoint.getInvalidFiles() + missing.size());
+            }
+            Long expectedLastId = checkpoint.getLastId();
+            Long expectedGeneration = checkpoint.getGeneration();
+            // 推进进度和清理无效记录在同一个事务中提交，进度已被其他节点推进时放弃本批
+            Integer deleted = transactionTemplate.execute(status ->
+                    checkpointMapper.advanceCheckpoint(next, expectedLastId, expectedGeneration) == 0 ? null : diskFileService.deleteMissingFiles(missing));
+            if (deleted == null) {
+                log.info("一致性检查进度已被其他节点推进，本次检查结束");
+                break;
+            }
+            if (finished) {
+                log.info("第 {} 轮文件一致性检查完成: 检查 {} 个文件, 无效 {} 个", next.getGeneration(),
+                        checkpoint.getCheckedFiles() + slice.size(), checkpoint.getInvalidFiles() + missing.size());
+            }
+            checkpoint = next;
+            checked += slice.size();
+            slices++;
+            invalid += missing.size();
+            cleaned += deleted;
+            reclaimed += sizeOf(missing);
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        scans.increment();
+        lastElapsedMillis = elapsed;
+        lastFilesPerSecond = filesPerSecond(checked, elapsed);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("slices", slices);
+        result.put("totalFiles", checked);
+        result.put("validFiles", checked - invalid);
+        result.put("invalidFiles", invalid);
+        result.put("cleanedFiles", cleaned);
+        result.put("reclaimedSpace", reclaimed);
+        result.put("lastId", checkpoint.getLastId());
+        result.put("generation", checkpoint.getGeneration());
+        result.put("elapsedMillis", elapsed);
+        result.put("filesPerSecond", lastFilesPerSecond);
+        return result;
+    }
+
+    /**
+     * 读取定时检查的进度，不存在时创建
+     */
+    private DiskConsistencyCheckpoint loadCheckpoint() {
+        DiskConsistencyCheckpoint checkpoint = checkpointMapper.selectCheckpoint(SCAN_KEY);
+        if (checkpoint == null) {
+            checkpointMapper.insertCheckpoint(SCAN_KEY);
+            checkpoint = checkpointMapper.selectCheckpoint(SCAN_KEY);
+        }
+        return checkpoint;
+    }
+
     @Override
     public boolean checkFileExists(Long fileId) {
         DiskFile file = diskFileService.selectDiskFileById(fileId);
-        if (file == null) {
-            return false;
+        return file != null && checkFileExists(file);
+    }
+
+    @Override
+    public boolean checkFileExists(DiskFile file) {
+        return resolve(Collections.singletonList(file)).get(file.getId());
+    }
+
+    @Override
+    public List<DiskFile> getInvalidFiles(Long userId) {
+        List<DiskFile> invalidFiles = new ArrayList<>();
+        scan(userId, invalidFiles::addAll);
+        return invalidFiles;
+    }
+
+    @Override
+    public List<DiskFile> findMissingFiles(List<DiskFile> files) {
+        return findMissing(files);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckFilesExist(List<Long> fileIds) {
+        return checkFilesExist(fileIds.toArray(new Long[0]), null);
+    }
+
+    @Override
+    public Map<Long, Boolean> checkFilesExist(Long[] ids, Long userId) {
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        if (ids == null || ids.length == 0) {
+            return result;
         }
-        
-        // 目录始终返回true
-        if (file.getIsDir() != null && file.getIsDir() == 1) {
-            return true;
+        for (Long id : ids) {
+            result.put(id, false);
         }
-        
-        String url = file.getUrl();
-        if (StringUtils.isEmpty(url)) {
-            return false;
+        List<DiskFile> files = userId == null ? diskFileMapper.selectDiskFileListByIds(ids)
+                : diskFileMapper.selectDiskFileListByIdsAndUserId(ids, userId);
+        result.putAll(resolve(files));
+        return result;
+    }
+
+    /**
+     * 判断文件记录对应的物理文件是否存在，目录始终存在
+     * 先查短期缓存，未命中的按所在目录分组：目录下只有一个文件时直接探测，多个文件时列举一次目录；
+     * 只缓存存在的结果，不存在和探测失败的文件每次都重新探测
+     */
+    private Map<Long, Boolean> resolve(List<DiskFile> files) {
+        Map<Long, Boolean> result = new HashMap<>();
+        long now = System.currentTimeMillis();
+        Map<String, List<DiskFile>> uncachedByDir = new HashMap<>();
+        for (DiskFile file : files) {
+            if (file.getIsDir() != null && file.getIsDir() == 1) {
+                result.put(file.getId(), true);
+                continue;
+            }
+            String relativePath = relativePath(file);
+            if (StringUtils.isEmpty(relativePath)) {
+                result.put(file.getId(), false);
+                continue;
+            }
+            existsChecks.increment();
+            if (cachedPresent(relativePath, now)) {
+                existsCacheHits.increment();
+                result.put(file.getId(), true);
+                continue;
+            }
+            uncachedByDir.computeIfAbsent(parentOf(relativePath), k -> new ArrayList<>()).add(file);
         }
-        
-        try {
-            String localPath = RuoYiConfig.getProfile();
-            String filePath = localPath + StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX);
-            
-            if (HdfsUtils.isHdfsEnabled()) {
-                String hdfsPath = HdfsUtils.buildHdfsPath(StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX));
-                return HdfsUtils.exists(hdfsPath);
-            } else {
-                File localFile = new File(filePath);
-                return localFile.exists();
+
+        // 只涉及一个目录时在当前线程解析，避免切换线程
+        Map<String, CompletableFuture<Set<String>>> pending = new HashMap<>();
+        uncachedByDir.forEach((dir, dirFiles) -> pending.put(dir, uncachedByDir.size() == 1
+                ? CompletableFuture.completedFuture(presentNames(dir, dirFiles))
+                : CompletableFuture.supplyAsync(() -> presentNames(dir, dirFiles), scanExecutor)));
+        for (Map.Entry<String, List<DiskFile>> entry : uncachedByDir.entrySet()) {
+            Set<String> names = pending.get(entry.getKey()).join();
+            for (DiskFile file : entry.getValue()) {
+                String relativePath = relativePath(file);
+                boolean exists = names != null && names.contains(nameOf(relativePath));
+                result.put(file.getId(), exists);
+                if (exists) {
+                    cachePresent(relativePath, now);
+                }
             }
+        }
+        return result;
+    }
+
+    /**
+     * 目录下存在的文件名，只需确认一个文件时直接探测该文件，失败时返回null
+     */
+    private Set<String> presentNames(String dir, List<DiskFile> files) {
+        if (files.size() > 1) {
+            return listNames(dir);
+        }
+        String relativePath = relativePath(files.get(0));
+        Boolean exists = probe(relativePath);
+        if (exists == null) {
+            return null;
+        }
+        return exists ? Collections.singleton(nameOf(relativePath)) : Collections.emptySet();
+    }
+
+    /**
+     * 直接探测单个物理文件是否存在，探测失败时返回null
+     */
+    private Boolean probe(String relativePath) {
+        try {
+            return HdfsUtils.isHdfsEnabled() ? HdfsUtils.exists(HdfsUtils.buildHdfsPath(relativePath))
+                    : new File(RuoYiConfig.getProfile() + relativePath).exists();
         } catch (Exception e) {
-            log.error("检查文件 {} 存在性时出错", fileId, e);
+            listingFailures.increment();
+            log.error("检查文件 {} 存在性时出错: {}", relativePath, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean cachedPresent(String relativePath, long now) {
+        if (existsCacheMillis <= 0) {
             return false;
         }
+        synchronized (presence) {
+            Long expireAt = presence.get(relativePath);
+            return expireAt != null && expireAt > now;
+        }
     }
 
-    @Override
-    public List<DiskFile> getInvalidFiles(Long userId) {
-        List<DiskFile> allFiles;
-        if (userId != null) {
-            allFiles = diskFileService.selectAllByUserId(userId);
-        } else {
-            allFiles = diskFileService.selectAll();
+    private void cachePresent(String relativePath, long now) {
+        if (existsCacheMillis <= 0) {
+            return;
         }
-        
-        List<DiskFile> invalidFiles = new ArrayList<>();
-        
-        for (DiskFile file : allFiles) {
-            // 跳过目录
+        synchronized (presence) {
+            presence.put(relativePath, now + existsCacheMillis);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("scans", scans.sum());
+        metrics.put("filesScanned", filesScanned.sum());
+        metrics.put("directoriesListed", directoriesListed.sum());
+        metrics.put("listingFailures", listingFailures.sum());
+        metrics.put("missingFound", missingFound.sum());
+        metrics.put("existsChecks", existsChecks.sum());
+        metrics.put("existsCacheHits", existsCacheHits.sum());
+        metrics.put("lastElapsedMillis", lastElapsedMillis);
+        metrics.put("lastFilesPerSecond", lastFilesPerSecond);
+        return metrics;
+    }
+
+    /**
+     * 按ID顺序分批读取文件记录（不含目录）并检查物理文件是否存在
+     *
+     * @param userId 用户ID，为null时检查所有用户
+     * @param onMissing 每批中物理文件不存在的记录
+     * @return 检查的文件数
+     */
+    private int scan(Long userId, Consumer<List<DiskFile>> onMissing) {
+        long startTime = System.currentTimeMillis();
+        int batchSize = Math.max(1, scanBatchSize);
+        int total = 0;
+        long lastId = 0;
+        List<DiskFile> batch;
+        do {
+            batch = diskFileMapper.selectFileSliceAfter(userId, lastId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            total += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+            List<DiskFile> missing = findMissing(batch);
+            if (!missing.isEmpty()) {
+                onMissing.accept(missing);
+            }
+        } while (batch.size() == batchSize);
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        scans.increment();
+        lastElapsedMillis = elapsed;
+        lastFilesPerSecond = filesPerSecond(total, elapsed);
+        return total;
+    }
+
+    /**
+     * 找出物理文件不存在的记录
+     * 按所在目录分组，每个目录只列举一次，得到的文件名集合与记录在内存中比对；
+     * 目录列举失败时该目录下的记录按存在处理，避免临时故障导致误删。
+     * 列举结果只用于本批：去重内容目录由多个用户共用，列举之后才提交的记录不能按旧的列举结果判断，
+     * 列举中未出现的文件在返回前再直接探测一次，确认不存在才作为无效记录
+     *
+     * @param files 文件记录
+     * @return 物理文件不存在的记录
+     */
+    private List<DiskFile> findMissing(List<DiskFile> files) {
+        List<DiskFile> missing = new ArrayList<>();
+        Map<String, List<DiskFile>> filesByDir = new HashMap<>();
+        for (DiskFile file : files) {
             if (file.getIsDir() != null && file.getIsDir() == 1) {
                 continue;
             }
-            
-            if (!checkFileExists(file.getId())) {
-                invalidFiles.add(file);
+            filesScanned.increment();
+            String relativePath = relativePath(file);
+            if (StringUtils.isEmpty(relativePath)) {
+                log.warn("文件 {} (ID: {}) URL为空，标记为无效", file.getName(), file.getId());
+                missing.add(file);
+                continue;
             }
+            filesByDir.computeIfAbsent(parentOf(relativePath), k -> new ArrayList<>()).add(file);
         }
-        
-        return invalidFiles;
+
+        Map<String, CompletableFuture<Set<String>>> pending = new HashMap<>();
+        for (String dir : filesByDir.keySet()) {
+            pending.put(dir, CompletableFuture.supplyAsync(() -> listNames(dir), scanExecutor));
+        }
+
+        for (Map.Entry<String, List<DiskFile>> entry : filesByDir.entrySet()) {
+            Set<String> names = pending.get(entry.getKey()).join();
+            if (names == null) {
+                continue;
+            }
+            for (DiskFile file : entry.getValue()) {
+                String relativePath = relativePath(file);
+                if (!names.contains(nameOf(relativePath)) && Boolean.FALSE.equals(probe(relativePath))) {
+                    log.debug("物理文件不存在: {} -> {}", file.getName(), file.getUrl());
+                    missing.add(file);
+                }
+            }
+        }
+        missingFound.add(missing.size());
+        return missing;
     }
 
-    @Override
-    public Map<Long, Boolean> batchCheckFilesExist(List<Long> fileIds) {
-        Map<Long, Boolean> result = new HashMap<>();
-        
-        for (Long fileId : fileIds) {
-            result.put(fileId, checkFileExists(fileId));
+    /**
+     * 列举目录下的文件名，目录不存在时返回空集合，列举失败时返回null
+     *
+     * @param dir 相对于存储根目录的目录路径，以/结尾
+     */
+    private Set<String> listNames(String dir) {
+        directoriesListed.increment();
+        Set<String> names = new HashSet<>();
+        try {
+            if (HdfsUtils.isHdfsEnabled()) {
+                for (FileStatus status : HdfsUtils.listFiles(HdfsUtils.buildHdfsPath(dir))) {
+                    names.add(status.getPath().getName());
+                }
+            } else {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(RuoYiConfig.getProfile() + dir))) {
+                    for (Path path : stream) {
+                        names.add(path.getFileName().toString());
+                    }
+                }
+            }
+            return names;
+        } catch (NoSuchFileException e) {
+            return names;
+        } catch (Exception e) {
+            listingFailures.increment();
+            log.error("列举目录 {} 时出错: {}", dir, e.getMessage());
+            return null;
         }
-        
-        return result;
     }
-}
 
+    /**
+     * 文件相对于存储根目录的路径，本地和HDFS相同
+     */
+    private static String relativePath(DiskFile file) {
+        return StringUtils.isEmpty(file.getUrl()) ? null : StringUtils.substringAfter(file.getUrl(), Constants.RESOURCE_PREFIX);
+    }
+
+    private static String parentOf(String relativePath) {
+        return relativePath.substring(0, relativePath.lastIndexOf('/') + 1);
+    }
+
+    private static String nameOf(String relativePath) {
+        return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+    }
+
+    private static long sizeOf(List<DiskFile> files) {
+        return files.stream()
+                .mapToLong(f -> f.getSize() != null ? f.getSize() : 0)
+                .sum();
+    }
+
+    private static long filesPerSecond(long files, long elapsedMillis) {
+        return elapsedMillis <= 0 ? files : files * 1000 / elapsedMillis;
+    }
+}
@@ -4,34 +4,46 @@ import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
 import com.gzu.common.utils.StringUtils;
 import com.gzu.disk.domain.DiskFile;
-import com.gzu.disk.domain.DiskStorage;
+import com.gzu.disk.mapper.DiskFileMapper;
 import com.gzu.disk.service.IDiskFileService;
-import com.gzu.disk.service.IDiskStorageService;
 import com.gzu.disk.service.IFileWatcherService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 文件监控服务实现
- * 使用 Java NIO WatchService 监控文件删除事件
- * 
+ * 使用 Java NIO WatchService 监控存储目录下的文件删除事件：
+ * 启动时递归注册存储目录，之后随目录创建、删除逐个增减 WatchKey；
+ * 事件在时间窗口内合并成批，按文件地址批量查询对应记录，不在内存中保存全部文件的路径映射；
+ * 事件溢出或目录失效时只重新检查该目录下的记录；
+ * 查到的记录放入有界队列，由处理线程按窗口批量删除并按用户汇总释放容量，队列满时监控线程等待
+ *
  * @author netdisk
  */
 @Service
@@ -40,36 +52,80 @@ public class FileWatcherServiceImpl implements IFileWatcherService {
 
     private static final Logger log = LoggerFactory.getLogger(FileWatcherServiceImpl.class);
 
+    /** 单次按地址查询的最大条数 */
+    private static final int MAX_QUERY_URLS = 1000;
+
     @Autowired
     private IDiskFileService diskFileService;
 
     @Autowired
-    private IDiskStorageService diskStorageService;
+    private DiskFileMapper diskFileMapper;
+
+    /** 监控的存储目录，相对于文件存储根目录，逗号分隔 */
+    @Value("${disk.file-watcher.roots:upload,blob}")
+    private String roots;
+
+    /** 事件合并的时间窗口（毫秒） */
+    @Value("${disk.file-watcher.batchMillis:500}")
+    private long batchMillis;
+
+    /** 每批最多合并的删除事件数，达到后立即处理 */
+    @Value("${disk.file-watcher.batchSize:1000}")
+    private int batchSize;
+
+    /** 待删除记录队列容量，队列满时监控线程等待 */
+    @Value("${disk.file-watcher.queueCapacity:10000}")
+    private int queueCapacity;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    /** 物理文件已删除、等待批量删除的记录 */
+    private BlockingQueue<DiskFile> pendingFiles;
+
+    private ExecutorService applyExecutor;
 
     private WatchService watchService;
     private ExecutorService executorService;
     private volatile boolean watching = false;
-    
-    // 文件路径 -> 文件ID 的映射
-    private final Map<String, Long> filePathToIdMap = new ConcurrentHashMap<>();
-    
+
+    /** 文件存储根目录 */
+    private Path profileRoot;
+
     // WatchKey -> 目录路径 的映射
     private final Map<WatchKey, Path> keyToPathMap = new ConcurrentHashMap<>();
 
+    // 目录路径 -> WatchKey 的映射
+    private final Map<Path, WatchKey> pathToKeyMap = new ConcurrentHashMap<>();
+
+    private final LongAdder events = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder overflows = new LongAdder();
+
+    private final LongAdder rescans = new LongAdder();
+
+    private final LongAdder deletedFiles = new LongAdder();
+
+    private final LongAdder applyBatches = new LongAdder();
+
+    private final LongAdder backpressureWaits = new LongAdder();
+
     @PostConstruct
     public void init() {
         log.info("========== 文件监控服务初始化 ==========");
         try {
-            this.watchService = FileSystems.getDefault().newWatchService();
-            this.executorService = Executors.newSingleThreadExecutor();
-            
-            // 构建文件路径映射
-            buildFilePathMapping();
-            
+            this.profileRoot = Paths.get(RuoYiConfig.getProfile()).toAbsolutePath().normalize();
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.pendingFiles = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+
             // 启动监控
             startWatching();
-            
-            log.info("文件监控服务初始化完成，共监控 {} 个文件", filePathToIdMap.size());
+
+            log.info("文件监控服务初始化完成，共监控 {} 个目录", pathToKeyMap.size());
         } catch (Exception e) {
             log.error("文件监控服务初始化失败", e);
         }
@@ -82,83 +138,35 @@ public class FileWatcherServiceImpl implements IFileWatcherService {
     }
 
     @Override
-    public void startWatching() {
+    public synchronized void startWatching() {
         if (watching) {
             log.warn("文件监控服务已经在运行中");
             return;
         }
 
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            log.error("创建 WatchService 失败", e);
+            return;
+        }
         watching = true;
-        executorService.submit(() -> {
-            log.info("文件监控线程启动");
-            
-            while (watching) {
-                try {
-                    WatchKey key = watchService.poll(1, TimeUnit.SECONDS);
-                    if (key == null) {
-                        continue;
-                    }
-
-                    Path dir = keyToPathMap.get(key);
-                    if (dir == null) {
-                        log.warn("未知的 WatchKey");
-                        key.reset();
-                        continue;
-                    }
-
-                    for (WatchEvent<?> event : key.pollEvents()) {
-                        WatchEvent.Kind<?> kind = event.kind();
+        registerRoots();
 
-                        if (kind == StandardWatchEventKinds.OVERFLOW) {
-                            continue;
-                        }
-
-                        @SuppressWarnings("unchecked")
-                        WatchEvent<Path> ev = (WatchEvent<Path>) event;
-                        Path filename = ev.context();
-                        Path fullPath = dir.resolve(filename);
-
-                        // 只处理删除事件
-                        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-                            handleFileDeleted(fullPath);
-                        }
-                    }
-
-                    boolean valid = key.reset();
-                    if (!valid) {
-                        keyToPathMap.remove(key);
-                        log.warn("WatchKey 失效，移除监控: {}", dir);
-                    }
-
-                } catch (InterruptedException e) {
-                    log.info("文件监控线程被中断");
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    log.error("文件监控过程中出错", e);
-                }
-            }
-            
-            log.info("文件监控线程停止");
-        });
+        this.executorService = Executors.newSingleThreadExecutor(r -> new Thread(r, "file-watcher"));
+        executorService.submit(this::watchLoop);
+        this.applyExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "file-watcher-apply"));
+        applyExecutor.submit(this::applyLoop);
     }
 
     @Override
-    public void stopWatching() {
+    public synchronized void stopWatching() {
         watching = false;
-        
-        if (executorService != null) {
-            executorService.shutdown();
-            try {
-                if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executorService.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
-        
+
+        shutdown(executorService);
+        // 处理线程在队列清空后退出
+        shutdown(applyExecutor);
+
         if (watchService != null) {
             try {
                 watchService.close();
@@ -166,25 +174,44 @@ public class FileWatcherServiceImpl implements IFileWatcherService {
                 log.error("关闭 WatchService 失败", e);
             }
         }
-        
+
         keyToPathMap.clear();
-        filePathToIdMap.clear();
-        
+        pathToKeyMap.clear();
+
         log.info("文件监控服务已停止");
     }
 
+    /**
+     * 补充注册新出现的目录，移除已不存在的目录，已注册的目录保持不变
+     */
     @Override
     public void reloadWatchDirectories() {
+        if (!watching) {
+            return;
+        }
         log.info("重新加载监控目录...");
-        
-        // 清除现有映射
-        filePathToIdMap.clear();
-        keyToPathMap.clear();
-        
-        // 重新构建
-        buildFilePathMapping();
-        
-        log.info("监控目录重新加载完成，共监控 {} 个文件", filePathToIdMap.size());
+        for (Path dir : new ArrayList<>(pathToKeyMap.keySet())) {
+            if (!Files.isDirectory(dir)) {
+                unregister(dir);
+            }
+        }
+        registerRoots();
+        log.info("监控目录重新加载完成，共监控 {} 个目录", pathToKeyMap.size());
+    }
+
+    private void shutdown(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -192,124 +219,291 @@ public class FileWatcherServiceImpl implements IFileWatcherService {
         return watching;
     }
 
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("directories", pathToKeyMap.size());
+        metrics.put("events", events.sum());
+        metrics.put("batches", batches.sum());
+        metrics.put("overflows", overflows.sum());
+        metrics.put("rescans", rescans.sum());
+        metrics.put("deletedFiles", deletedFiles.sum());
+        metrics.put("applyBatches", applyBatches.sum());
+        metrics.put("pendingFiles", pendingFiles == null ? 0 : pendingFiles.size());
+        metrics.put("backpressureWaits", backpressureWaits.sum());
+        return metrics;
+    }
+
     /**
-     * 构建文件路径到ID的映射，并注册目录监控
+     * 监控线程：收集事件，窗口到期或事件数达到上限时批量处理
      */
-    private void buildFilePathMapping() {
-        try {
-            // 获取所有有效文件
-            List<DiskFile> allFiles = diskFileService.selectAll();
-            
-            log.info("开始构建文件路径映射，共 {} 个文件", allFiles.size());
-            
-            String profilePath = RuoYiConfig.getProfile();
-            Map<String, Boolean> registeredDirs = new HashMap<>();
-            
-            for (DiskFile file : allFiles) {
-                // 跳过目录
-                if (file.getIsDir() != null && file.getIsDir() == 1) {
-                    continue;
+    private void watchLoop() {
+        log.info("文件监控线程启动");
+        Set<Path> deleted = new LinkedHashSet<>();
+        Set<Path> rescan = new LinkedHashSet<>();
+        long windowStart = 0;
+
+        while (watching) {
+            try {
+                boolean idle = deleted.isEmpty() && rescan.isEmpty();
+                long timeout = idle ? 1000 : Math.max(1, windowStart + batchMillis - System.currentTimeMillis());
+                WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key, deleted, rescan);
+                    if (idle && (!deleted.isEmpty() || !rescan.isEmpty())) {
+                        windowStart = System.currentTimeMillis();
+                    }
                 }
-                
-                String url = file.getUrl();
-                if (StringUtils.isEmpty(url)) {
-                    continue;
+                if ((!deleted.isEmpty() || !rescan.isEmpty()) && (deleted.size() >= batchSize
+                        || System.currentTimeMillis() - windowStart >= batchMillis)) {
+                    flush(deleted, rescan);
+                    deleted.clear();
+                    rescan.clear();
                 }
-                
-                // 构建完整文件路径
-                String relativePath = StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX);
-                String fullPath = profilePath + relativePath;
-                File localFile = new File(fullPath);
-                
-                // 将路径标准化
-                String normalizedPath = localFile.getAbsolutePath();
-                filePathToIdMap.put(normalizedPath, file.getId());
-                
-                // 注册父目录监控
-                String parentDir = localFile.getParent();
-                if (parentDir != null && !registeredDirs.containsKey(parentDir)) {
-                    try {
-                        Path dirPath = Paths.get(parentDir);
-                        if (Files.exists(dirPath) && Files.isDirectory(dirPath)) {
-                            WatchKey key = dirPath.register(
-                                watchService,
-                                StandardWatchEventKinds.ENTRY_DELETE
-                            );
-                            keyToPathMap.put(key, dirPath);
-                            registeredDirs.put(parentDir, true);
-                            log.debug("注册目录监控: {}", parentDir);
-                        }
-                    } catch (IOException e) {
-                        log.warn("注册目录监控失败: {}", parentDir, e);
-                    }
+            } catch (InterruptedException e) {
+                log.info("文件监控线程被中断");
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                break;
+            } catch (Exception e) {
+                log.error("文件监控过程中出错", e);
+                deleted.clear();
+                rescan.clear();
+            }
+        }
+
+        log.info("文件监控线程停止");
+    }
+
+    /**
+     * 取出一个目录的事件：新建的子目录立即注册，删除的文件和需要重新检查的目录加入本批
+     */
+    private void collect(WatchKey key, Set<Path> deleted, Set<Path> rescan) {
+        Path dir = keyToPathMap.get(key);
+        if (dir == null) {
+            log.warn("未知的 WatchKey");
+            key.cancel();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            events.increment();
+            WatchEvent.Kind<?> kind = event.kind();
+
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失，只重新检查该目录
+                overflows.increment();
+                rescan.add(dir);
+                continue;
+            }
+
+            Path fullPath = dir.resolve((Path) event.context());
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                if (Files.isDirectory(fullPath, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(fullPath);
+                }
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                if (pathToKeyMap.containsKey(fullPath)) {
+                    rescan.add(fullPath);
+                } else {
+                    deleted.add(fullPath);
                 }
             }
-            
-            log.info("文件路径映射构建完成，监控 {} 个目录", registeredDirs.size());
-            
-        } catch (Exception e) {
-            log.error("构建文件路径映射失败", e);
+        }
+
+        if (!key.reset()) {
+            log.warn("WatchKey 失效，移除监控: {}", dir);
+            unregister(dir);
+            rescan.add(dir);
         }
     }
 
     /**
-     * 处理文件删除事件
+     * 处理一批事件：按文件地址批量查询记录，只处理当前确实不存在的文件
      */
-    @Transactional
-    protected void handleFileDeleted(Path deletedPath) {
-        try {
-            String deletedPathStr = deletedPath.toAbsolutePath().toString();
-            Long fileId = filePathToIdMap.get(deletedPathStr);
-            
-            if (fileId == null) {
-                log.debug("检测到文件删除，但未找到对应的数据库记录: {}", deletedPathStr);
-                return;
+    private void flush(Set<Path> deleted, Set<Path> rescan) throws InterruptedException {
+        batches.increment();
+        for (Path dir : rescan) {
+            rescanDirectory(dir, deleted);
+        }
+
+        // 窗口内删除后又重新创建的文件不处理
+        List<String> urls = new ArrayList<>();
+        for (Path path : deleted) {
+            String url = toUrl(path);
+            if (url != null && !Files.exists(path)) {
+                urls.add(url);
+            }
+        }
+
+        for (int from = 0; from < urls.size(); from += MAX_QUERY_URLS) {
+            List<String> slice = urls.subList(from, Math.min(from + MAX_QUERY_URLS, urls.size()));
+            for (DiskFile file : diskFileMapper.selectDiskFileListByUrls(slice)) {
+                enqueue(file);
             }
-            
-            // 查询文件信息
-            DiskFile file = diskFileService.selectDiskFileById(fileId);
-            if (file == null) {
-                log.warn("文件ID {} 在数据库中不存在", fileId);
-                filePathToIdMap.remove(deletedPathStr);
+        }
+    }
+
+    /**
+     * 重新检查目录下（含子目录）的记录，物理文件已不存在的加入删除列表；目录仍存在时补充注册其子目录
+     */
+    private void rescanDirectory(Path dir, Set<Path> deleted) {
+        String url = toUrl(dir);
+        if (url == null) {
+            return;
+        }
+        rescans.increment();
+        if (Files.isDirectory(dir)) {
+            registerTree(dir);
+        }
+        for (DiskFile file : diskFileMapper.selectDiskFileListByUrlPrefix(escapeLike(url + "/"))) {
+            Path path = toPath(file.getUrl());
+            if (!Files.exists(path)) {
+                deleted.add(path);
+            }
+        }
+    }
+
+    private void registerRoots() {
+        for (String root : roots.split(",")) {
+            if (StringUtils.isEmpty(root.trim())) {
+                continue;
+            }
+            Path dir = profileRoot.resolve(root.trim()).normalize();
+            if (Files.isDirectory(dir)) {
+                registerTree(dir);
+            }
+        }
+    }
+
+    /**
+     * 注册目录及其所有子目录，已注册的目录跳过
+     */
+    private void registerTree(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("注册目录监控失败: {}", start, e);
+        }
+    }
+
+    private void register(Path dir) {
+        Path normalized = dir.toAbsolutePath().normalize();
+        if (pathToKeyMap.containsKey(normalized)) {
+            return;
+        }
+        try {
+            WatchKey key = normalized.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            keyToPathMap.put(key, normalized);
+            pathToKeyMap.put(normalized, key);
+            log.debug("注册目录监控: {}", normalized);
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.warn("注册目录监控失败: {}", normalized, e);
+        }
+    }
+
+    private void unregister(Path dir) {
+        WatchKey key = pathToKeyMap.remove(dir);
+        if (key != null) {
+            keyToPathMap.remove(key);
+            key.cancel();
+        }
+    }
+
+    /**
+     * 物理路径转换为文件地址，不在存储根目录下时返回null
+     */
+    private String toUrl(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (!absolute.startsWith(profileRoot) || absolute.equals(profileRoot)) {
+            return null;
+        }
+        return Constants.RESOURCE_PREFIX + "/" + profileRoot.relativize(absolute).toString().replace(File.separatorChar, '/');
+    }
+
+    private Path toPath(String url) {
+        return Paths.get(RuoYiConfig.getProfile() + StringUtils.substringAfter(url, Constants.RESOURCE_PREFIX))
+                .toAbsolutePath().normalize();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 物理文件已删除的记录放入待处理队列，队列已满时阻塞监控线程，直到处理线程腾出空间
+     */
+    private void enqueue(DiskFile file) throws InterruptedException {
+        while (!pendingFiles.offer(file, 1, TimeUnit.SECONDS)) {
+            backpressureWaits.increment();
+            if (!watching) {
                 return;
             }
-            
-            log.info("========== 检测到文件被删除 ==========");
-            log.info("文件名: {}", file.getName());
-            log.info("文件ID: {}", fileId);
-            log.info("文件路径: {}", deletedPathStr);
-            log.info("文件大小: {} bytes", file.getSize());
-            log.info("所属用户: {}", file.getCreateId());
-            
-            // 删除数据库记录
-            int deleted = diskFileService.deleteDiskFileByIds(new Long[]{fileId});
-            
-            if (deleted > 0) {
-                log.info("✓ 已自动删除数据库记录");
-                
-                // 更新用户存储容量
-                if (file.getSize() != null && file.getSize() > 0) {
-                    DiskStorage storage = diskStorageService.selectDiskStorageByUserId(file.getCreateId());
-                    if (storage != null) {
-                        long newUsedCapacity = Math.max(0, storage.getUsedCapacity() - file.getSize());
-                        storage.setUsedCapacity(newUsedCapacity);
-                        diskStorageService.updateDiskStorage(storage);
-                        log.info("✓ 已更新用户存储容量，减少: {} bytes", file.getSize());
+        }
+    }
+
+    /**
+     * 处理线程：攒够一批或窗口到期后，用一次批量删除和每个用户一次容量释放处理整批记录
+     */
+    private void applyLoop() {
+        List<DiskFile> batch = new ArrayList<>();
+        while (watching || !pendingFiles.isEmpty()) {
+            try {
+                DiskFile first = pendingFiles.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + batchMillis;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0 || pendingFiles.drainTo(batch, batchSize - batch.size()) == 0
+                            && !pollInto(batch, remaining)) {
+                        break;
                     }
                 }
-                
-                // 从映射中移除
-                filePathToIdMap.remove(deletedPathStr);
-                
-            } else {
-                log.warn("✗ 删除数据库记录失败");
+                applyDeleted(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("处理文件删除事件时出错", e);
+            } finally {
+                batch.clear();
             }
-            
-            log.info("========== 文件删除处理完成 ==========");
-            
-        } catch (Exception e) {
-            log.error("处理文件删除事件时出错: {}", deletedPath, e);
         }
     }
-}
 
+    private boolean pollInto(List<DiskFile> batch, long timeoutMillis) throws InterruptedException {
+        DiskFile file = pendingFiles.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (file == null) {
+            return false;
+        }
+        batch.add(file);
+        return true;
+    }
+
+    /**
+     * 在一个事务中批量清理记录，释放内容引用并按用户汇总释放存储容量
+     */
+    private void applyDeleted(List<DiskFile> batch) {
+        Integer deleted = transactionTemplate.execute(status -> diskFileService.deleteMissingFiles(batch));
+        applyBatches.increment();
+        deletedFiles.add(deleted);
+        log.info("物理文件已被删除，批量清理 {} 条记录（本批 {} 个事件）", deleted, batch.size());
+    }
+}
@@ -0,0 +1,80 @@
+package com.gzu.disk.task;
+
+import com.gzu.common.core.redis.RedisLock;
+import com.gzu.disk.service.IDiskFileService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录汇总修复定时任务
+ * 物化路径和目录大小、数量随文件增删改增量维护，并发修改或异常中断可能产生偏差，定期按实际数据重新计算；
+ * 多节点部署时通过Redis锁只由一个节点执行
+ *
+ * @author netdisk
+ */
+@Component
+@ConditionalOnProperty(prefix = "disk.tree", name = "repairEnabled", havingValue = "true", matchIfMissing = true)
+public class DiskFileSubtreeTask {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskFileSubtreeTask.class);
+
+    private static final String LOCK_KEY = "disk_tree:repair_lock";
+
+    /** 锁的过期时间，需长于一次修复的耗时 */
+    private static final long LOCK_TIMEOUT_MINUTES = 60;
+
+    @Autowired
+    private IDiskFileService diskFileService;
+
+    @Autowired
+    private ThreadPoolTaskExecutor threadPoolTaskExecutor;
+
+    @Autowired
+    private RedisLock redisLock;
+
+    /** 启动后是否执行一次修复，用于为已有数据初始化路径和目录汇总 */
+    @Value("${disk.tree.repairOnStartup:true}")
+    private boolean repairOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        if (repairOnStartup) {
+            threadPoolTaskExecutor.execute(this::repair);
+        }
+    }
+
+    /**
+     * 默认每天凌晨4点执行
+     */
+    @Scheduled(cron = "${disk.tree.repairCron:0 0 4 * * ?}")
+    public void repair() {
+        long start = System.currentTimeMillis();
+        String token = null;
+        try {
+            token = redisLock.tryLock(LOCK_KEY, LOCK_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            if (token == null) {
+                log.info("其他节点正在执行目录汇总修复，本节点跳过");
+                return;
+            }
+            int paths = diskFileService.repairPaths();
+            int repaired = diskFileService.repairSubtreeAggregates(null);
+            log.info("目录汇总修复任务完成，修正 {} 个路径、{} 个目录，耗时 {} ms", paths, repaired, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("目录汇总修复任务执行失败", e);
+        } finally {
+            if (token != null) {
+                redisLock.unlock(LOCK_KEY, token);
+            }
+        }
+    }
+}
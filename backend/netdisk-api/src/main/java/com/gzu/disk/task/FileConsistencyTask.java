@@ -26,17 +26,17 @@ public class FileConsistencyTask {
 
     /**
      * 定时检查并清理无效文件
-     * 默认每天凌晨3点执行
+     * 默认每天凌晨3点执行，每次从上次的进度继续，检查的文件数有上限
      */
     @Scheduled(cron = "${disk.consistency.cron:0 0 3 * * ?}")
     public void checkAndCleanInvalidFiles() {
         log.info("========== 开始执行定时文件一致性检查任务 ==========");
         
         try {
-            Map<String, Object> result = fileConsistencyService.checkAndCleanInvalidFiles(null);
+            Map<String, Object> result = fileConsistencyService.checkNextSlices();
             
             log.info("定时任务执行完成:");
-            log.info("  - 检查文件总数: {}", result.get("totalFiles"));
+            log.info("  - 检查文件总数: {}, 进度: 第 {} 轮 ID {}", result.get("totalFiles"), result.get("generation"), result.get("lastId"));
             log.info("  - 有效文件: {}", result.get("validFiles"));
             log.info("  - 无效文件: {}", result.get("invalidFiles"));
             log.info("  - 已清理: {}", result.get("cleanedFiles"));
@@ -0,0 +1,56 @@
+package com.gzu.common.core.redis;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于Redis的简单互斥锁，用于多节点部署时只让一个节点执行定时任务
+ * 锁带过期时间，持有锁的节点异常退出后自动释放
+ *
+ * @author netdisk
+ */
+@Component
+public class RedisLock
+{
+    /** 只删除自己持有的锁，避免锁过期后误删其他节点的锁 */
+    private static final String UNLOCK_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then\n" +
+            "return redis.call('del', KEYS[1])\n" +
+            "end\n" +
+            "return 0";
+
+    private final DefaultRedisScript<Long> unlockScript = new DefaultRedisScript<>(UNLOCK_SCRIPT, Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 尝试获取锁，不等待
+     *
+     * @param key 锁的键值
+     * @param timeout 锁的过期时间
+     * @param unit 时间颗粒度
+     * @return 锁的持有标识，用于释放锁；锁已被占用时返回null
+     */
+    public String tryLock(final String key, final long timeout, final TimeUnit unit)
+    {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(key, token, timeout, unit);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param key 锁的键值
+     * @param token {@link #tryLock} 返回的持有标识
+     */
+    public void unlock(final String key, final String token)
+    {
+        stringRedisTemplate.execute(unlockScript, Collections.singletonList(key), token);
+    }
+}
@@ -0,0 +1,87 @@
+package com.gzu.common.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的字符串布隆过滤器
+ * 判定不存在时一定不存在，判定存在时可能误判，需要再回源确认
+ *
+ * @author netdisk
+ */
+public class BloomFilter
+{
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计插入数量
+     * @param fpp 期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp)
+    {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * 加入元素
+     */
+    public void put(String value)
+    {
+        long h1 = fnv1a(value, 0x811C9DC5L);
+        long h2 = fnv1a(value, 0x01000193L) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << (index & 63);
+            long old;
+            do
+            {
+                old = bits.get(word);
+                if ((old & mask) != 0)
+                {
+                    break;
+                }
+            }
+            while (!bits.compareAndSet(word, old, old | mask));
+        }
+    }
+
+    /**
+     * 元素是否可能存在
+     */
+    public boolean mightContain(String value)
+    {
+        long h1 = fnv1a(value, 0x811C9DC5L);
+        long h2 = fnv1a(value, 0x01000193L) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << (index & 63))) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long fnv1a(String value, long seed)
+    {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,225 @@
+package com.gzu.common.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 不可变的敏感词多模式匹配器（Aho-Corasick 自动机）
+ * 构建后只读，可被多个线程共享；词库变化时构建新实例整体替换。
+ * 每个节点的转移按字符排序存放在数组中，匹配时二分查找，contains 不分配对象
+ *
+ * @author netdisk
+ */
+public final class SensitiveWordMatcher
+{
+    private static final char[] NO_KEYS = new char[0];
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    /** 各节点的转移字符，升序 */
+    private final char[][] keys;
+
+    /** 各节点的转移目标，与 keys 一一对应 */
+    private final int[][] targets;
+
+    /** 失配指针 */
+    private final int[] fail;
+
+    /** 以该节点结尾的词的长度，0表示不是词尾 */
+    private final int[] wordLength;
+
+    /** 沿失配指针找到的下一个词尾节点，-1表示没有 */
+    private final int[] outputLink;
+
+    private final int wordCount;
+
+    private SensitiveWordMatcher(char[][] keys, int[][] targets, int[] fail, int[] wordLength, int[] outputLink,
+            int wordCount)
+    {
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.wordLength = wordLength;
+        this.outputLink = outputLink;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * 构建匹配器，忽略空词和重复词
+     *
+     * @param words 敏感词
+     * @return 匹配器
+     */
+    public static SensitiveWordMatcher build(Collection<String> words)
+    {
+        // 构建期使用有序Map保存转移，完成后压缩为数组
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        lengths.add(0);
+        int count = 0;
+        for (String word : words)
+        {
+            if (word == null || word.isEmpty())
+            {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++)
+            {
+                Integer next = trie.get(state).get(word.charAt(i));
+                if (next == null)
+                {
+                    next = trie.size();
+                    trie.get(state).put(word.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    lengths.add(0);
+                }
+                state = next;
+            }
+            if (lengths.get(state) == 0)
+            {
+                lengths.set(state, word.length());
+                count++;
+            }
+        }
+
+        int size = trie.size();
+        char[][] keys = new char[size][];
+        int[][] targets = new int[size][];
+        int[] wordLength = new int[size];
+        for (int node = 0; node < size; node++)
+        {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            keys[node] = edges.isEmpty() ? NO_KEYS : new char[edges.size()];
+            targets[node] = edges.isEmpty() ? NO_TARGETS : new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet())
+            {
+                keys[node][i] = edge.getKey();
+                targets[node][i] = edge.getValue();
+                i++;
+            }
+            wordLength[node] = lengths.get(node);
+        }
+
+        // 按层遍历计算失配指针，父节点的失配指针总是先于子节点算出
+        int[] fail = new int[size];
+        int[] outputLink = new int[size];
+        Arrays.fill(outputLink, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0])
+        {
+            queue.add(child);
+        }
+        while (!queue.isEmpty())
+        {
+            int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++)
+            {
+                char c = keys[node][i];
+                int child = targets[node][i];
+                int f = fail[node];
+                int next;
+                while ((next = transition(keys, targets, f, c)) < 0 && f != 0)
+                {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 ? 0 : next;
+                outputLink[child] = wordLength[fail[child]] > 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+        return new SensitiveWordMatcher(keys, targets, fail, wordLength, outputLink, count);
+    }
+
+    /**
+     * 词库中的词数
+     */
+    public int size()
+    {
+        return wordCount;
+    }
+
+    /**
+     * 文本中是否包含敏感词
+     */
+    public boolean contains(CharSequence text)
+    {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            state = step(state, text.charAt(i));
+            if (wordLength[state] > 0 || outputLink[state] >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 字符数组的指定区间中是否包含敏感词
+     *
+     * @param text 字符数组
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     */
+    public boolean contains(char[] text, int from, int to)
+    {
+        int state = 0;
+        for (int i = from; i < to; i++)
+        {
+            state = step(state, text[i]);
+            if (wordLength[state] > 0 || outputLink[state] >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找文本中出现的全部敏感词，按出现顺序去重
+     */
+    public Set<String> findAll(CharSequence text)
+    {
+        Set<String> found = new LinkedHashSet<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            state = step(state, text.charAt(i));
+            int node = wordLength[state] > 0 ? state : outputLink[state];
+            while (node >= 0)
+            {
+                found.add(text.subSequence(i + 1 - wordLength[node], i + 1).toString());
+                node = outputLink[node];
+            }
+        }
+        return found;
+    }
+
+    private int step(int state, char c)
+    {
+        int next;
+        while ((next = transition(keys, targets, state, c)) < 0 && state != 0)
+        {
+            state = fail[state];
+        }
+        return next < 0 ? 0 : next;
+    }
+
+    private static int transition(char[][] keys, int[][] targets, int state, char c)
+    {
+        int index = Arrays.binarySearch(keys[state], c);
+        return index < 0 ? -1 : targets[state][index];
+    }
+}
@@ -0,0 +1,52 @@
+package com.gzu.common.utils.file;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 文件读写缓冲区池
+ * 固定大小的堆缓冲区循环使用，避免每次读写都分配新的字节数组；池空时临时分配，池满时丢弃
+ *
+ * @author netdisk
+ */
+public class ByteBufferPool
+{
+    /** 单个缓冲区大小 64KB */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 池中最多保留的缓冲区数量 */
+    private static final int MAX_POOLED = 256;
+
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private ByteBufferPool()
+    {
+    }
+
+    /**
+     * 获取一个已清空的缓冲区，用完后需调用 {@link #release(ByteBuffer)} 归还
+     */
+    public static ByteBuffer acquire()
+    {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null)
+        {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public static void release(ByteBuffer buffer)
+    {
+        if (buffer != null && buffer.hasArray() && buffer.capacity() == BUFFER_SIZE)
+        {
+            buffer.clear();
+            POOL.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.gzu.common.utils.file;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.gzu.common.utils.StringUtils;
+import com.gzu.common.utils.hdfs.HdfsUtils;
+import com.gzu.common.utils.uuid.IdUtils;
+
+/**
+ * 文件分段输出工具类
+ * 支持 Range（含多段）、If-Range、If-None-Match、If-Modified-Since，本地文件和HDFS文件均按偏移量读取；
+ * 本地文件优先使用Tomcat sendfile，其次 FileChannel.transferTo
+ *
+ * @author netdisk
+ */
+public class FileRangeUtils
+{
+    private static final Logger log = LoggerFactory.getLogger(FileRangeUtils.class);
+
+    /** 单次请求允许的最大分段数，超出时忽略Range返回完整内容 */
+    private static final int MAX_RANGES = 32;
+
+    /** 小于该大小的内容直接写出，与Tomcat DefaultServlet的默认sendfileSize一致 */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileRangeUtils()
+    {
+    }
+
+    /**
+     * 按请求头输出文件内容，调用前应已设置Content-Type和Content-Disposition
+     *
+     * @param request 请求
+     * @param response 响应
+     * @param filePath 文件路径（本地绝对路径，HDFS启用时自动转换）
+     * @throws FileNotFoundException 文件不存在
+     */
+    public static void writeRange(HttpServletRequest request, HttpServletResponse response, String filePath) throws IOException
+    {
+        Source source = Source.resolve(filePath);
+        long length = source.length;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(source.lastModified) + "\"";
+
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", source.lastModified);
+
+        if (notModified(request, etag, source.lastModified))
+        {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String rangeHeader = request.getHeader("Range");
+        if (StringUtils.isEmpty(rangeHeader) || !ifRangeMatches(request, etag, source.lastModified))
+        {
+            response.setContentLengthLong(length);
+            write(source, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> ranges = parseRanges(rangeHeader, length);
+        if (ranges == null)
+        {
+            response.setContentLengthLong(length);
+            write(source, 0, length, request, response);
+            return;
+        }
+        if (ranges.isEmpty())
+        {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1)
+        {
+            long[] range = ranges.get(0);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            write(source, range[0], range[1] - range[0] + 1, request, response);
+            return;
+        }
+
+        // 多段：multipart/byteranges，长度可以预先算出
+        String contentType = StringUtils.isEmpty(response.getContentType()) ? "application/octet-stream" : response.getContentType();
+        String boundary = IdUtils.simpleUUID();
+        List<byte[]> headers = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (long[] range : ranges)
+        {
+            byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: bytes "
+                    + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            headers.add(header);
+            total += header.length + range[1] - range[0] + 1;
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        total += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(total);
+        OutputStream os = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            long[] range = ranges.get(i);
+            os.write(headers.get(i));
+            copy(source, range[0], range[1] - range[0] + 1, os);
+        }
+        os.write(end);
+    }
+
+    /**
+     * If-None-Match 优先于 If-Modified-Since
+     */
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified)
+    {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null)
+        {
+            for (String tag : ifNoneMatch.split(","))
+            {
+                String value = tag.trim();
+                if (value.startsWith("W/"))
+                {
+                    value = value.substring(2);
+                }
+                if ("*".equals(value) || etag.equals(value))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince != -1 && lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range 与当前文件不一致时应返回完整内容
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified)
+    {
+        String ifRange = request.getHeader("If-Range");
+        if (StringUtils.isEmpty(ifRange))
+        {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\""))
+        {
+            return etag.equals(ifRange.trim());
+        }
+        long date = dateHeader(request, "If-Range");
+        return date != -1 && lastModified / 1000 * 1000 <= date;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name)
+    {
+        try
+        {
+            return request.getDateHeader(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析Range请求头，返回排序合并后的闭区间列表
+     *
+     * @return 格式不支持时返回null（按完整内容处理），没有可满足的区间时返回空列表
+     */
+    static List<long[]> parseRanges(String header, long length)
+    {
+        if (!header.startsWith("bytes="))
+        {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES)
+        {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs)
+        {
+            String value = spec.trim();
+            int dash = value.indexOf('-');
+            if (dash < 0)
+            {
+                return null;
+            }
+            boolean openEnded = dash == value.length() - 1;
+            long start;
+            long end;
+            try
+            {
+                if (dash == 0)
+                {
+                    // 后缀区间：最后 N 个字节
+                    long suffix = Long.parseLong(value.substring(1));
+                    if (suffix <= 0)
+                    {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                }
+                else
+                {
+                    start = Long.parseLong(value.substring(0, dash));
+                    end = openEnded ? length - 1 : Long.parseLong(value.substring(dash + 1));
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+            // 起点超出文件末尾的开放区间（如 bytes=1000- 请求1000字节的文件）属于不可满足，不是格式错误
+            if (start > end && dash != 0 && !openEnded)
+            {
+                return null;
+            }
+            if (start >= length)
+            {
+                continue;
+            }
+            ranges.add(new long[] { start, Math.min(end, length - 1) });
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] range : ranges)
+        {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1)
+            {
+                last[1] = Math.max(last[1], range[1]);
+            }
+            else
+            {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 输出单段内容作为整个响应体
+     * 本地文件在连接器支持时交给Tomcat sendfile，由内核直接从文件发送到socket
+     */
+    private static void write(Source source, long start, long count, HttpServletRequest request,
+            HttpServletResponse response) throws IOException
+    {
+        if (source.file != null && count >= SENDFILE_MIN_SIZE
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+        {
+            request.setAttribute(SENDFILE_FILENAME, source.file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        copy(source, start, count, response.getOutputStream());
+    }
+
+    /**
+     * 从指定偏移量输出指定长度的内容，不关闭输出流
+     * 本地文件通过 FileChannel.transferTo 输出，不经过堆上的中转数组
+     */
+    private static void copy(Source source, long start, long count, OutputStream os) throws IOException
+    {
+        if (source.file != null)
+        {
+            try (FileChannel in = FileChannel.open(source.file.toPath(), StandardOpenOption.READ))
+            {
+                WritableByteChannel out = Channels.newChannel(os);
+                long position = start;
+                long end = start + count;
+                while (position < end)
+                {
+                    long n = in.transferTo(position, end - position, out);
+                    if (n <= 0)
+                    {
+                        break;
+                    }
+                    position += n;
+                }
+            }
+            return;
+        }
+        ByteBuffer buffer = ByteBufferPool.acquire();
+        try (FSDataInputStream in = HdfsUtils.open(source.hdfsPath))
+        {
+            in.seek(start);
+            copy(in, os, count, buffer.array());
+        }
+        finally
+        {
+            ByteBufferPool.release(buffer);
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream os, long count, byte[] bytes) throws IOException
+    {
+        long remaining = count;
+        while (remaining > 0)
+        {
+            int n = in.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+            if (n < 0)
+            {
+                break;
+            }
+            os.write(bytes, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * 待输出的文件，HDFS启用且文件存在时读取HDFS，否则读取本地文件（与 FileUtils.writeBytes 一致）
+     */
+    private static class Source
+    {
+        private String hdfsPath;
+
+        private File file;
+
+        private long length;
+
+        private long lastModified;
+
+        static Source resolve(String filePath) throws IOException
+        {
+            Source source = new Source();
+            if (HdfsUtils.isHdfsEnabled())
+            {
+                try
+                {
+                    String hdfsPath = FileUtils.convertToHdfsPath(filePath);
+                    if (HdfsUtils.exists(hdfsPath))
+                    {
+                        FileStatus status = HdfsUtils.getFileStatus(hdfsPath);
+                        source.hdfsPath = hdfsPath;
+                        source.length = status.getLen();
+                        source.lastModified = status.getModificationTime();
+                        return source;
+                    }
+                }
+                catch (IOException e)
+                {
+                    log.warn("HDFS读取失败，尝试本地文件系统: {}", e.getMessage());
+                }
+            }
+            File file = new File(filePath);
+            if (!file.isFile())
+            {
+                throw new FileNotFoundException(filePath);
+            }
+            source.file = file;
+            source.length = file.length();
+            source.lastModified = file.lastModified();
+            return source;
+        }
+    }
+}
@@ -97,7 +97,7 @@ public class FileUtils
     /**
      * 将文件路径转换为HDFS路径
      */
-    private static String convertToHdfsPath(String filePath) {
+    public static String convertToHdfsPath(String filePath) {
         log.debug("转换路径 - 输入: {}", filePath);
         log.debug("Profile路径: {}", RuoYiConfig.getProfile());
         log.debug("RESOURCE_PREFIX: {}", Constants.RESOURCE_PREFIX);
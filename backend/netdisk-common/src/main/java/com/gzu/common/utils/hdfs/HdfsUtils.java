@@ -121,6 +121,34 @@ public class HdfsUtils {
         }
     }
 
+    /**
+     * 创建HDFS文件并返回输出流（覆盖已存在的文件），由调用方负责关闭
+     */
+    public static FSDataOutputStream create(String destPath) throws IOException {
+        if (!isHdfsEnabled()) {
+            throw new IOException("HDFS未启用");
+        }
+
+        Path path = new Path(destPath);
+
+        // 确保父目录存在
+        Path parent = path.getParent();
+        if (parent != null && !staticFileSystem.exists(parent)) {
+            staticFileSystem.mkdirs(parent);
+        }
+        return staticFileSystem.create(path, true);
+    }
+
+    /**
+     * 打开HDFS文件输入流，由调用方负责关闭
+     */
+    public static FSDataInputStream open(String srcPath) throws IOException {
+        if (!isHdfsEnabled()) {
+            throw new IOException("HDFS未启用");
+        }
+        return staticFileSystem.open(new Path(srcPath));
+    }
+
     /**
      * 从HDFS下载文件到输出流
      */
@@ -0,0 +1,74 @@
+package com.gzu.common.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 敏感词匹配器测试
+ *
+ * @author netdisk
+ */
+public class SensitiveWordMatcherTest
+{
+    @Test
+    public void findsOverlappingWordsInOrder()
+    {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(Arrays.asList("she", "he", "hers"), Arrays.asList(matcher.findAll("ushers").toArray()));
+        assertEquals(Arrays.asList("his", "he", "hers"), Arrays.asList(matcher.findAll("this hers").toArray()));
+        assertTrue(matcher.contains("ushers"));
+    }
+
+    @Test
+    public void reportsWordReachedOnlyThroughFailLink()
+    {
+        // "abc" 不是词，但其失配指针指向词尾 "bc"
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Arrays.asList("abcd", "bc"));
+
+        assertEquals(Collections.singletonList("bc"), Arrays.asList(matcher.findAll("abce").toArray()));
+        assertTrue(matcher.contains("abce"));
+        assertFalse(matcher.contains("abd"));
+    }
+
+    @Test
+    public void followsOutputLinkChain()
+    {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Arrays.asList("a", "aa", "aaa"));
+
+        assertEquals(Arrays.asList("a", "aa", "aaa"), Arrays.asList(matcher.findAll("aaa").toArray()));
+    }
+
+    @Test
+    public void recoversFromMismatchThroughFailLink()
+    {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Collections.singletonList("abd"));
+
+        assertTrue(matcher.contains("ababd"));
+        assertFalse(matcher.contains("abab"));
+    }
+
+    @Test
+    public void ignoresEmptyAndDuplicateWords()
+    {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Arrays.asList("", null, "x", "x"));
+
+        assertEquals(1, matcher.size());
+        assertFalse(SensitiveWordMatcher.build(Collections.emptyList()).contains("abc"));
+    }
+
+    @Test
+    public void containsOnlyLooksInsideGivenRange()
+    {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(Collections.singletonList("bad"));
+        char[] text = "xxbadxx".toCharArray();
+
+        assertFalse(matcher.contains(text, 0, 4));
+        assertTrue(matcher.contains(text, 2, 5));
+    }
+}
@@ -0,0 +1,97 @@
+package com.gzu.common.utils.file;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Range请求头解析测试
+ *
+ * @author netdisk
+ */
+public class FileRangeUtilsTest
+{
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void parsesSingleRange()
+    {
+        assertRanges(FileRangeUtils.parseRanges("bytes=0-99", LENGTH), new long[] { 0, 99 });
+    }
+
+    @Test
+    public void resolvesOpenEndedAndSuffixRanges()
+    {
+        assertRanges(FileRangeUtils.parseRanges("bytes=900-", LENGTH), new long[] { 900, 999 });
+        assertRanges(FileRangeUtils.parseRanges("bytes=-100", LENGTH), new long[] { 900, 999 });
+        assertRanges(FileRangeUtils.parseRanges("bytes=-2000", LENGTH), new long[] { 0, 999 });
+        assertRanges(FileRangeUtils.parseRanges("bytes=900-5000", LENGTH), new long[] { 900, 999 });
+    }
+
+    @Test
+    public void sortsAndMergesOverlappingAndAdjacentRanges()
+    {
+        assertRanges(FileRangeUtils.parseRanges("bytes=500-599, 0-99,100-199,150-250", LENGTH),
+                new long[] { 0, 250 }, new long[] { 500, 599 });
+        assertRanges(FileRangeUtils.parseRanges("bytes=0-10,-50,960-970", LENGTH),
+                new long[] { 0, 10 }, new long[] { 950, 999 });
+    }
+
+    @Test
+    public void dropsUnsatisfiableRangesAndKeepsTheRest()
+    {
+        assertRanges(FileRangeUtils.parseRanges("bytes=0-9,5000-6000", LENGTH), new long[] { 0, 9 });
+    }
+
+    @Test
+    public void returnsEmptyListWhenNothingIsSatisfiable()
+    {
+        // 调用方据此返回 416 Range Not Satisfiable
+        assertEmpty(FileRangeUtils.parseRanges("bytes=1000-", LENGTH));
+        assertEmpty(FileRangeUtils.parseRanges("bytes=-0", LENGTH));
+        assertEmpty(FileRangeUtils.parseRanges("bytes=2000-3000,1500-", LENGTH));
+        assertEmpty(FileRangeUtils.parseRanges("bytes=0-", 0));
+    }
+
+    @Test
+    public void ignoresMalformedOrUnsupportedHeaders()
+    {
+        assertNull(FileRangeUtils.parseRanges("items=0-1", LENGTH));
+        assertNull(FileRangeUtils.parseRanges("bytes=abc", LENGTH));
+        assertNull(FileRangeUtils.parseRanges("bytes=5", LENGTH));
+        assertNull(FileRangeUtils.parseRanges("bytes=10-5", LENGTH));
+        assertNull(FileRangeUtils.parseRanges("bytes=x-10", LENGTH));
+    }
+
+    @Test
+    public void ignoresHeaderWithTooManyRanges()
+    {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= 32; i++)
+        {
+            header.append(',').append(i * 10).append('-').append(i * 10);
+        }
+        assertNull(FileRangeUtils.parseRanges(header.toString(), LENGTH));
+    }
+
+    private static void assertRanges(List<long[]> actual, long[]... expected)
+    {
+        assertNotNull(actual);
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertArrayEquals(expected[i], actual.get(i));
+        }
+    }
+
+    private static void assertEmpty(List<long[]> actual)
+    {
+        assertNotNull(actual);
+        assertTrue(actual.isEmpty());
+    }
+}
@@ -23,6 +23,7 @@ import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.util.ClassUtils;
 import com.gzu.common.utils.StringUtils;
+import com.gzu.framework.interceptor.SqlStatementInterceptor;
 
 /**
  * Mybatis支持*匹配扫描包
@@ -127,6 +128,7 @@ public class MyBatisConfig
         sessionFactory.setTypeAliasesPackage(typeAliasesPackage);
         sessionFactory.setMapperLocations(resolveMapperLocations(StringUtils.split(mapperLocations, ",")));
         sessionFactory.setConfigLocation(new DefaultResourceLoader().getResource(configLocation));
+        sessionFactory.setPlugins(new SqlStatementInterceptor());
         return sessionFactory.getObject();
     }
 }
\ No newline at end of file
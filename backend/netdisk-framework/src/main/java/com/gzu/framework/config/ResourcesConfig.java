@@ -13,6 +13,7 @@ import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import com.gzu.common.config.RuoYiConfig;
 import com.gzu.common.constant.Constants;
+import com.gzu.framework.interceptor.DbRoundTripInterceptor;
 import com.gzu.framework.interceptor.RepeatSubmitInterceptor;
 
 /**
@@ -26,6 +27,9 @@ public class ResourcesConfig implements WebMvcConfigurer
     @Autowired
     private RepeatSubmitInterceptor repeatSubmitInterceptor;
 
+    @Autowired
+    private DbRoundTripInterceptor dbRoundTripInterceptor;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry)
     {
@@ -48,6 +52,7 @@ public class ResourcesConfig implements WebMvcConfigurer
     public void addInterceptors(InterceptorRegistry registry)
     {
         registry.addInterceptor(repeatSubmitInterceptor).addPathPatterns("/**");
+        registry.addInterceptor(dbRoundTripInterceptor).addPathPatterns("/**");
     }
 
     /**
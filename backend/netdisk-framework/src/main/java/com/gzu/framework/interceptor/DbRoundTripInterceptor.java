@@ -0,0 +1,32 @@
+package com.gzu.framework.interceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 接口数据库往返次数拦截器
+ * 按 请求方法 + 匹配的路径模板 汇总，路径变量不会产生新的统计项
+ *
+ * @author netdisk
+ */
+@Component
+public class DbRoundTripInterceptor implements HandlerInterceptor
+{
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        DbRoundTripStats.begin();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
+            throws Exception
+    {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DbRoundTripStats.end(pattern == null ? null : request.getMethod() + " " + pattern);
+    }
+}
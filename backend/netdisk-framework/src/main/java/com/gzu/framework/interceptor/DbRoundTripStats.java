@@ -0,0 +1,110 @@
+package com.gzu.framework.interceptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口数据库往返次数统计
+ * 请求线程上的SQL执行次数由 SqlStatementInterceptor 计入，请求结束时由 DbRoundTripInterceptor 按接口汇总；
+ * 异步线程中执行的SQL不计入任何接口
+ *
+ * @author netdisk
+ */
+public class DbRoundTripStats
+{
+    /** 当前请求已执行的SQL数，不在请求中时为空 */
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private static final Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+
+    private DbRoundTripStats()
+    {
+    }
+
+    /**
+     * 开始统计当前线程的请求
+     */
+    public static void begin()
+    {
+        CURRENT.set(new long[1]);
+    }
+
+    /**
+     * 当前线程执行了一次SQL
+     */
+    public static void increment()
+    {
+        long[] counter = CURRENT.get();
+        if (counter != null)
+        {
+            counter[0]++;
+        }
+    }
+
+    /**
+     * 结束当前线程的请求并计入接口统计
+     *
+     * @param endpoint 接口标识，为空时只清除当前线程的计数
+     */
+    public static void end(String endpoint)
+    {
+        long[] counter = CURRENT.get();
+        CURRENT.remove();
+        if (counter == null || endpoint == null)
+        {
+            return;
+        }
+        ENDPOINTS.computeIfAbsent(endpoint, k -> new Endpoint()).record(counter[0]);
+    }
+
+    /**
+     * 各接口统计，按平均往返次数倒序
+     */
+    public static List<Map<String, Object>> getMetrics()
+    {
+        List<Map<String, Object>> rows = new ArrayList<>(ENDPOINTS.size());
+        ENDPOINTS.forEach((endpoint, stat) ->
+        {
+            long requests = stat.requests.sum();
+            long statements = stat.statements.sum();
+            Map<String, Object> row = new HashMap<>();
+            row.put("endpoint", endpoint);
+            row.put("requests", requests);
+            row.put("statements", statements);
+            row.put("avg", requests == 0 ? 0D : (double) statements / requests);
+            row.put("max", stat.max.get());
+            rows.add(row);
+        });
+        rows.sort((a, b) -> Double.compare((Double) b.get("avg"), (Double) a.get("avg")));
+        return rows;
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset()
+    {
+        ENDPOINTS.clear();
+    }
+
+    private static class Endpoint
+    {
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder statements = new LongAdder();
+
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long count)
+        {
+            requests.increment();
+            statements.add(count);
+            max.accumulateAndGet(count, Math::max);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.gzu.framework.interceptor;
+
+import java.sql.Connection;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+/**
+ * SQL执行计数拦截器
+ * 每条预编译语句对应一次数据库往返，分页插件的count查询同样计入
+ *
+ * @author netdisk
+ */
+@Intercepts({ @Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }) })
+public class SqlStatementInterceptor implements Interceptor
+{
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        DbRoundTripStats.increment();
+        return invocation.proceed();
+    }
+}
@@ -15,6 +15,61 @@
 /*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;
 /*!40111 SET @OLD_SQL_NOTES=@@SQL_NOTES, SQL_NOTES=0 */;
 
+--
+-- Table structure for table `disk_blob`
+--
+
+DROP TABLE IF EXISTS `disk_blob`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `disk_blob` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `hash` char(32) NOT NULL COMMENT '内容MD5',
+  `url` varchar(500) NOT NULL COMMENT '物理文件地址',
+  `size` bigint DEFAULT '0' COMMENT '文件大小',
+  `ref_count` int NOT NULL DEFAULT '0' COMMENT '引用次数',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hash` (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文件内容存储';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `disk_blob`
+--
+
+LOCK TABLES `disk_blob` WRITE;
+/*!40000 ALTER TABLE `disk_blob` DISABLE KEYS */;
+/*!40000 ALTER TABLE `disk_blob` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `disk_consistency_checkpoint`
+--
+
+DROP TABLE IF EXISTS `disk_consistency_checkpoint`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `disk_consistency_checkpoint` (
+  `scan_key` varchar(64) NOT NULL COMMENT '检查范围',
+  `last_id` bigint unsigned NOT NULL DEFAULT '0' COMMENT '已检查到的最大文件ID',
+  `generation` bigint NOT NULL DEFAULT '0' COMMENT '已完成的完整轮次',
+  `checked_files` bigint NOT NULL DEFAULT '0' COMMENT '本轮已检查文件数',
+  `invalid_files` bigint NOT NULL DEFAULT '0' COMMENT '本轮已清理的无效文件数',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`scan_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='一致性检查进度';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `disk_consistency_checkpoint`
+--
+
+LOCK TABLES `disk_consistency_checkpoint` WRITE;
+/*!40000 ALTER TABLE `disk_consistency_checkpoint` DISABLE KEYS */;
+/*!40000 ALTER TABLE `disk_consistency_checkpoint` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `disk_file`
 --
@@ -38,7 +93,16 @@ CREATE TABLE `disk_file` (
   `update_time` datetime DEFAULT NULL COMMENT '更新时间',
   `remark` varchar(255) DEFAULT NULL COMMENT '备注',
   `del_flag` char(1) DEFAULT '0' COMMENT '删除标志（0代表存在 2代表删除）',
-  PRIMARY KEY (`id`)
+  `hash` char(32) DEFAULT NULL COMMENT '内容哈希，对应disk_blob，为空表示独立存储的旧文件',
+  `subtree_size` bigint DEFAULT '0' COMMENT '目录下未删除文件的总大小（仅目录）',
+  `subtree_count` bigint DEFAULT '0' COMMENT '目录下未删除的文件和目录数量（仅目录）',
+  `path` varchar(1000) DEFAULT NULL COMMENT '物化路径，祖先目录ID和自身ID，如 /12/34/',
+  PRIMARY KEY (`id`),
+  KEY `idx_path` (`path`),
+  KEY `idx_user_parent` (`create_id`,`parent_id`,`del_flag`,`name`),
+  KEY `idx_user_name` (`create_id`,`name`),
+  KEY `idx_parent` (`parent_id`,`del_flag`),
+  KEY `idx_url` (`url`)
 ) ENGINE=InnoDB AUTO_INCREMENT=129 DEFAULT CHARSET=utf8mb3 COMMENT='文件';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -161,7 +225,8 @@ CREATE TABLE `disk_storage` (
   `update_time` datetime DEFAULT NULL COMMENT '更新时间',
   `remark` varchar(255) DEFAULT NULL COMMENT '备注',
   `del_flag` char(1) DEFAULT '0' COMMENT '删除标志（0代表存在 2代表删除）',
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_create_id` (`create_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=6 DEFAULT CHARSET=utf8mb3 COMMENT='存储信息';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -392,6 +457,35 @@ INSERT INTO `sys_dict_type` VALUES (1,'用户性别','sys_user_sex','0','admin',
 /*!40000 ALTER TABLE `sys_dict_type` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `sys_file_content`
+--
+
+DROP TABLE IF EXISTS `sys_file_content`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `sys_file_content` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `hash` char(32) NOT NULL COMMENT '服务端计算的MD5',
+  `total_size` bigint DEFAULT NULL COMMENT '文件总大小',
+  `filename` varchar(200) DEFAULT NULL COMMENT '首次上传的文件名',
+  `url` varchar(200) DEFAULT NULL COMMENT '链接',
+  `location` varchar(200) DEFAULT NULL COMMENT '存储地址',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hash` (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文件内容索引';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `sys_file_content`
+--
+
+LOCK TABLES `sys_file_content` WRITE;
+/*!40000 ALTER TABLE `sys_file_content` DISABLE KEYS */;
+/*!40000 ALTER TABLE `sys_file_content` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `sys_filelist`
 --
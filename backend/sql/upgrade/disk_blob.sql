@@ -0,0 +1,16 @@
+-- 文件内容去重存储：相同内容只保存一份物理文件，disk_file.hash 指向 disk_blob
+-- 已有文件的 hash 保持为空，按独立存储的旧文件处理
+
+CREATE TABLE IF NOT EXISTS `disk_blob` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `hash` char(32) NOT NULL COMMENT '内容MD5',
+  `url` varchar(500) NOT NULL COMMENT '物理文件地址',
+  `size` bigint DEFAULT '0' COMMENT '文件大小',
+  `ref_count` int NOT NULL DEFAULT '0' COMMENT '引用次数',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hash` (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文件内容存储';
+
+ALTER TABLE `disk_file`
+  ADD COLUMN `hash` char(32) DEFAULT NULL COMMENT '内容哈希，对应disk_blob，为空表示独立存储的旧文件';
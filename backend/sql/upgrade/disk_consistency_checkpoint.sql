@@ -0,0 +1,11 @@
+-- 一致性检查进度：定时检查按文件ID顺序分批推进，每批提交时记录检查到的位置
+
+CREATE TABLE IF NOT EXISTS `disk_consistency_checkpoint` (
+  `scan_key` varchar(64) NOT NULL COMMENT '检查范围',
+  `last_id` bigint unsigned NOT NULL DEFAULT '0' COMMENT '已检查到的最大文件ID',
+  `generation` bigint NOT NULL DEFAULT '0' COMMENT '已完成的完整轮次',
+  `checked_files` bigint NOT NULL DEFAULT '0' COMMENT '本轮已检查文件数',
+  `invalid_files` bigint NOT NULL DEFAULT '0' COMMENT '本轮已清理的无效文件数',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`scan_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='一致性检查进度';
@@ -0,0 +1,9 @@
+-- disk_file 常用查询的组合索引
+-- idx_user_parent：目录列表、同名校验（create_id, parent_id, del_flag, name）
+-- idx_user_name：按文件名前缀搜索
+-- idx_parent：按父目录查询子项（parent_id, del_flag）
+
+ALTER TABLE `disk_file`
+  ADD KEY `idx_user_parent` (`create_id`,`parent_id`,`del_flag`,`name`),
+  ADD KEY `idx_user_name` (`create_id`,`name`),
+  ADD KEY `idx_parent` (`parent_id`,`del_flag`);
@@ -0,0 +1,16 @@
+-- 为 disk_file 增加物化路径，已有数据按 parent_id 从根目录逐层生成
+-- 路径格式为 /祖先目录ID/.../自身ID/，子树查询为 path like '前缀%'
+
+ALTER TABLE `disk_file`
+  ADD COLUMN `path` varchar(1000) DEFAULT NULL COMMENT '物化路径，祖先目录ID和自身ID，如 /12/34/',
+  ADD KEY `idx_path` (`path`);
+
+UPDATE `disk_file` f INNER JOIN (
+  WITH RECURSIVE t (id, path) AS (
+    SELECT id, CAST(CONCAT('/', id, '/') AS CHAR(1000)) FROM `disk_file` WHERE parent_id = 0
+    UNION ALL
+    SELECT c.id, CONCAT(t.path, c.id, '/') FROM `disk_file` c INNER JOIN t ON c.parent_id = t.id
+  )
+  SELECT id, path FROM t
+) p ON f.id = p.id
+SET f.path = p.path;
@@ -0,0 +1,18 @@
+-- 目录行上保存子树汇总：未删除的子孙文件总大小和数量（仅目录）
+-- 已有数据按 parent_id 逐层展开后汇总，已删除的节点不计入也不再向下展开，与 repairSubtreeAggregates 一致
+
+ALTER TABLE `disk_file`
+  ADD COLUMN `subtree_size` bigint DEFAULT '0' COMMENT '目录下未删除文件的总大小（仅目录）',
+  ADD COLUMN `subtree_count` bigint DEFAULT '0' COMMENT '目录下未删除的文件和目录数量（仅目录）';
+
+UPDATE `disk_file` d INNER JOIN (
+  WITH RECURSIVE t (root_id, id, size, is_dir) AS (
+    SELECT c.parent_id, c.id, c.size, c.is_dir FROM `disk_file` c WHERE c.del_flag = '0' AND c.parent_id <> 0
+    UNION ALL
+    SELECT t.root_id, c.id, c.size, c.is_dir FROM `disk_file` c INNER JOIN t ON c.parent_id = t.id
+    WHERE c.del_flag = '0' AND t.is_dir = 1
+  )
+  SELECT root_id, SUM(IFNULL(size, 0)) AS subtree_size, COUNT(*) AS subtree_count FROM t GROUP BY root_id
+) s ON d.id = s.root_id
+SET d.subtree_size = s.subtree_size, d.subtree_count = s.subtree_count
+WHERE d.is_dir = 1;
@@ -0,0 +1,4 @@
+-- 文件监控按物理文件地址反查记录（等值和前缀查询）
+
+ALTER TABLE `disk_file`
+  ADD KEY `idx_url` (`url`);
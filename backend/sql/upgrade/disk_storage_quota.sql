@@ -0,0 +1,5 @@
+-- disk_storage 按用户原子更新已用容量
+-- 更新语句按 create_id 定位，没有索引时会扫描并锁住整张表
+
+ALTER TABLE `disk_storage`
+  ADD KEY `idx_create_id` (`create_id`);
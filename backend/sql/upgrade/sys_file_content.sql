@@ -0,0 +1,13 @@
+-- 文件内容索引：分片上传合并后由服务端计算MD5登记，秒传只匹配已登记的内容
+
+CREATE TABLE IF NOT EXISTS `sys_file_content` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `hash` char(32) NOT NULL COMMENT '服务端计算的MD5',
+  `total_size` bigint DEFAULT NULL COMMENT '文件总大小',
+  `filename` varchar(200) DEFAULT NULL COMMENT '首次上传的文件名',
+  `url` varchar(200) DEFAULT NULL COMMENT '链接',
+  `location` varchar(200) DEFAULT NULL COMMENT '存储地址',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hash` (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文件内容索引';